@@ -7,10 +7,14 @@ import random
 import signal
 import sys
 from datetime import datetime
+from relays import Relays
 
 # Глобальные переменные
 running = True
 connected = False
+cloud_client = None   # Облачный брокер (EMQX): команды сервера, состояния для сервера
+lan_client = None     # Локальный брокер хаба: прямое управление из приложения
+relays = None
 
 def load_config(config_file="config.yaml"):
     """Загрузка конфигурации"""
@@ -43,10 +47,19 @@ def on_connect(client, userdata, flags, rc):
         command_topic = config['publish']['command_topic']
         client.subscribe(command_topic, qos=1)
         print(f"   📫 Подписан на: {command_topic}")
+
+        # Команды сервера устройствам: {base}/device/{id}/cmd
+        device_topic = f"{device_base_topic(config)}/device/+/cmd"
+        client.subscribe(device_topic, qos=1)
+        print(f"   📫 Подписан на: {device_topic}")
         
         # 2. ПУБЛИКАЦИЯ СТАТУСА ONLINE
         publish_status(client, config, "online", retain=True)
         
+        # 3. Состояния реле: пока не было связи, их могли переключить из домашней сети
+        for device_id, state in relays.states().items():
+            client.publish(device_state_topic(config, device_id), payload=state, qos=1)
+        
     else:
         error_msgs = {
             1: "Неверная версия протокола",
@@ -64,8 +77,67 @@ def on_message(client, userdata, msg):
     print(f"   Топик: {msg.topic}")
     print(f"   Данные: {msg.payload.decode()}")
     
-    # Здесь можно добавить обработку команд
-    # Например: если msg.payload == "turn_on_light", то включить свет через GPIO
+    # Команда устройству: {base}/device/{id}/cmd
+    levels = msg.topic.split('/')
+    if len(levels) >= 3 and levels[-3] == 'device' and levels[-1] == 'cmd':
+        handle_device_command(userdata['config'], levels[-2], msg.payload.decode())
+
+def device_base_topic(config):
+    """Базовый топик устройств (MQTT_BASE_TOPIC сервера, базовый топик в приложении)"""
+    return config.get('base_topic', 'smart_home/production')
+
+def device_state_topic(config, device_id):
+    return f"{device_base_topic(config)}/device/{device_id}/state"
+
+def handle_device_command(config, device_id, state):
+    """
+    Выполнить команду и опубликовать состояние, прочитанное с реле.
+    
+    Состояние уходит в оба брокера: приложение в домашней сети считает команду
+    выполненной только по нему (подтверждения брокера недостаточно), а сервер
+    по нему обновляет БД и поток событий дома. Если команда не выполнена,
+    ничего не публикуется — приложение отправит её через сервер.
+    """
+    actual = relays.apply(device_id, state)
+    if actual is None:
+        return
+    print(f"   Устройство {device_id} -> {actual}")
+    
+    topic = device_state_topic(config, device_id)
+    if lan_client is not None and lan_client.is_connected():
+        lan_client.publish(topic, payload=actual, qos=1)
+    if connected:
+        # Без связи с облаком состояние уйдёт при переподключении (см. on_connect)
+        cloud_client.publish(topic, payload=actual, qos=1)
+
+def on_lan_connect(client, userdata, flags, rc):
+    """Подключение к локальному брокеру"""
+    if rc == 0:
+        device_topic = f"{device_base_topic(userdata['config'])}/device/+/cmd"
+        client.subscribe(device_topic, qos=1)
+        print(f"🏠 Локальный брокер: подписан на {device_topic}")
+    else:
+        print(f"Ошибка подключения к локальному брокеру: код {rc}")
+
+def setup_lan_client(config):
+    """
+    Клиент локального брокера (например, mosquitto на этом же Raspberry Pi).
+    Его адрес указывается в приложении для прямого управления; None — выключено
+    """
+    lan = config.get('lan', {})
+    if not lan.get('enabled', False):
+        return None
+    
+    client = mqtt.Client(
+        client_id=f"{config['mqtt']['client_id']}_lan",
+        userdata={'config': config}
+    )
+    client.on_connect = on_lan_connect
+    client.on_message = on_message
+    client.connect_async(lan.get('broker', '127.0.0.1'), lan.get('port', 1883), 30)
+    client.loop_start()
+    print(f"🏠 Локальный брокер: {lan.get('broker', '127.0.0.1')}:{lan.get('port', 1883)}")
+    return client
 
 def on_disconnect(client, userdata, rc):
     """Обработка отключения"""
@@ -198,7 +270,7 @@ def setup_mqtt_client(config):
 
 def main():
     """Основная функция"""
-    global running, connected
+    global running, connected, cloud_client, lan_client, relays
     
     # Обработка Ctrl+C
     signal.signal(signal.SIGINT, signal_handler)
@@ -206,8 +278,13 @@ def main():
     # Загрузка конфигурации
     config = load_config()
     
+    # Реле устройств
+    relays = Relays(config['devices'])
+    
     # Настройка MQTT клиента
     client = setup_mqtt_client(config)
+    cloud_client = client
+    lan_client = setup_lan_client(config)
     
     try:
         # Подключение к брокеру
@@ -269,6 +346,10 @@ def main():
         # Остановка клиента
         client.loop_stop()
         client.disconnect()
+        if lan_client is not None:
+            lan_client.loop_stop()
+            lan_client.disconnect()
+        relays.cleanup()
         
         print("Клиент остановлен")
         print("=" * 50)
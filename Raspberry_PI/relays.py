@@ -0,0 +1,50 @@
+import RPi.GPIO as GPIO
+
+# Состояния, которые присылает приложение и сервер
+STATE_ON = "ON"
+STATE_OFF = "OFF"
+
+
+class Relays:
+    """
+    Реле устройств из config.yaml, адресуемые id устройства на сервере (server_id)
+    """
+
+    def __init__(self, devices_config):
+        GPIO.setmode(GPIO.BCM)
+        GPIO.setwarnings(False)
+
+        self.pins = {}
+        for device in devices_config.values():
+            if device.get('type') in ('led', 'relay') and 'server_id' in device:
+                self.pins[str(device['server_id'])] = device['pin']
+                GPIO.setup(device['pin'], GPIO.OUT)
+
+    def apply(self, device_id, state):
+        """
+        Переключить реле и вернуть состояние, прочитанное с пина после переключения.
+        None — команда не выполнена (неизвестное устройство или состояние)
+        """
+        pin = self.pins.get(device_id)
+        if pin is None:
+            print(f"   Устройство {device_id} не подключено к этому хабу")
+            return None
+
+        state = state.strip().upper()
+        if state not in (STATE_ON, STATE_OFF):
+            print(f"   Неизвестное состояние '{state}' для устройства {device_id}")
+            return None
+
+        GPIO.output(pin, GPIO.HIGH if state == STATE_ON else GPIO.LOW)
+        return self.read(device_id)
+
+    def read(self, device_id):
+        """Фактическое состояние реле"""
+        return STATE_ON if GPIO.input(self.pins[device_id]) else STATE_OFF
+
+    def states(self):
+        """Состояния всех реле: {device_id: state}"""
+        return {device_id: self.read(device_id) for device_id in self.pins}
+
+    def cleanup(self):
+        GPIO.cleanup(list(self.pins.values()))
@@ -54,7 +54,8 @@ dependencies {
     // Retrofit & Networking
     implementation("com.squareup.retrofit2:retrofit:2.9.0")
     implementation("com.squareup.retrofit2:converter-gson:2.9.0")
-    implementation("com.squareup.okhttp3:logging-interceptor:4.11.0")
+    // Retrofit 2.9 сам тянет OkHttp 3.14 — interceptor'ы, Authenticator и WebSocket рассчитаны на 4.x
+    implementation("com.squareup.okhttp3:okhttp:4.11.0")
     implementation("androidx.appcompat:appcompat:1.6.1")
     // Lifecycle
     implementation("androidx.lifecycle:lifecycle-viewmodel-ktx:2.7.0")
@@ -65,6 +66,11 @@ dependencies {
     implementation("androidx.room:room-runtime:2.6.0")
     annotationProcessor("androidx.room:room-compiler:2.6.0")
 
+    // MQTT: прямое управление через брокер в домашней сети
+    implementation("org.eclipse.paho:org.eclipse.paho.client.mqttv3:1.2.5")
+    // Встроенный брокер для JVM-тестов LanMqttSession
+    testImplementation("io.moquette:moquette-broker:0.17")
+
     implementation(platform("com.google.firebase:firebase-bom:32.7.0"))
     implementation("com.google.firebase:firebase-messaging")
 
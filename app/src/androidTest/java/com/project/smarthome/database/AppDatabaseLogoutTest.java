@@ -0,0 +1,73 @@
+package com.project.smarthome.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.project.smarthome.api.ApiClient;
+import com.project.smarthome.utils.AppExecutors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(AndroidJUnit4.class)
+public class AppDatabaseLogoutTest {
+
+    private static final int HOME = 1;
+    private static final long WAIT_SEC = 5;
+
+    private AppDatabase database;
+
+    @Before
+    public void setUp() throws Exception {
+        Context context = ApplicationProvider.getApplicationContext();
+        ApiClient.initialize(context);
+        database = AppDatabase.getInstance(context);
+
+        HomeEntity home = new HomeEntity();
+        home.id = HOME;
+        home.name = "Дом";
+        DeviceEntity device = new DeviceEntity();
+        device.id = 10;
+        device.homeId = HOME;
+        device.state = "ON";
+
+        AppExecutors.database().submit(() -> {
+            database.homeDao().insertAll(Collections.singletonList(home));
+            database.deviceDao().insert(device);
+            database.deviceDao().saveSyncState(new DeviceSyncEntity(HOME, "2024-01-01T00:00:00"));
+            database.pendingCommandDao().upsert(new PendingCommandEntity(10, "OFF", 1L));
+        }).get(WAIT_SEC, TimeUnit.SECONDS);
+        assertEquals(1, database.homeDao().getAll().size());
+    }
+
+    @Test
+    public void logoutClearsCachedSnapshotAndJournal() throws Exception {
+        ApiClient.logout();
+        // database() выполняет задачи по порядку: после этой очистка уже прошла
+        AppExecutors.database().submit(() -> { }).get(WAIT_SEC, TimeUnit.SECONDS);
+
+        assertTrue(database.homeDao().getAll().isEmpty());
+        assertTrue(database.deviceDao().getForHome(HOME).isEmpty());
+        assertNull(database.deviceDao().getWatermark(HOME));
+        assertTrue(database.pendingCommandDao().getAll().isEmpty());
+    }
+
+    @Test
+    public void clearOnLogoutCanBeAwaited() throws Exception {
+        AppDatabase.clearOnLogout(ApplicationProvider.getApplicationContext())
+                .get(WAIT_SEC, TimeUnit.SECONDS);
+
+        assertTrue(database.homeDao().getAll().isEmpty());
+        assertTrue(database.pendingCommandDao().getAll().isEmpty());
+    }
+}
@@ -0,0 +1,33 @@
+package com.project.smarthome;
+
+import android.app.Application;
+import android.content.Intent;
+import android.widget.Toast;
+
+import com.project.smarthome.api.ApiClient;
+import com.project.smarthome.models.auth.LoginActivity;
+
+/**
+ * Инициализация общих клиентов до первого экрана.
+ *
+ * Если сессия истекла (сервер ответил 401, а обновить токен нечем), TokenAuthenticator
+ * уже сбросил токен — здесь пользователь один раз переводится на экран входа,
+ * а не остаётся на главном экране, где каждый запрос завершается ошибкой.
+ */
+public class SmartHomeApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        ApiClient.initialize(this);
+        ApiClient.setSessionListener(this::openLogin);
+    }
+
+    private void openLogin() {
+        ApiClient.logout();
+        Toast.makeText(this, "Сессия истекла, войдите снова", Toast.LENGTH_LONG).show();
+        Intent intent = new Intent(this, LoginActivity.class);
+        intent.setFlags(Intent.FLAG_ACTIVITY_CLEAR_TASK | Intent.FLAG_ACTIVITY_NEW_TASK);
+        startActivity(intent);
+    }
+}
@@ -3,23 +3,39 @@ package com.project.smarthome;
 import android.content.Intent;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
 import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 import com.project.smarthome.api.ApiClient;
 import com.project.smarthome.api.ApiService;
 import com.project.smarthome.models.auth.LoginActivity;
+import com.project.smarthome.repositories.StartupPrefetcher;
+import com.project.smarthome.utils.AppExecutors;
 import com.project.smarthome.utils.SharedPrefManager;
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
 import java.util.Map;
 
+/**
+ * Заставка: пока она на экране, прогревается соединение с сервером (ping)
+ * и загружаются дома, комнаты и устройства. Переход — как только данные готовы,
+ * но не позже SPLASH_DEADLINE_MS; недогруженные данные главный экран получит сам.
+ */
 public class SplashActivity extends AppCompatActivity {
 
-    private static final int SPLASH_DELAY = 2000; // Увеличим задержку для проверки сервера
+    private static final String TAG = "SplashActivity";
+    private static final long SPLASH_DEADLINE_MS = 3000;
     private SharedPrefManager sharedPrefManager;
     private ApiService apiService;
 
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable deadline = this::onDeadline;
+    private boolean serverReachable = false;
+    private boolean dataReady = false;
+    private boolean navigated = false;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -30,7 +46,20 @@ public class SplashActivity extends AppCompatActivity {
         sharedPrefManager = SharedPrefManager.getInstance(this);
         apiService = ApiClient.getApiService();
 
-        new Handler().postDelayed(this::checkServerAndNavigate, SPLASH_DELAY);
+        handler.postDelayed(deadline, SPLASH_DEADLINE_MS);
+        checkServerAndNavigate();
+
+        // Загрузка идёт параллельно с ping; её результат — в локальном снимке репозитория
+        new StartupPrefetcher(getApplicationContext()).prefetch().whenCompleteAsync((result, error) -> {
+            dataReady = true;
+            navigateIfReady();
+        }, AppExecutors.main());
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        handler.removeCallbacks(deadline);
     }
 
     private void checkServerAndNavigate() {
@@ -39,8 +68,9 @@ public class SplashActivity extends AppCompatActivity {
             @Override
             public void onResponse(Call<Map<String, String>> call, Response<Map<String, String>> response) {
                 if (response.isSuccessful()) {
-                    // Сервер доступен, проверяем авторизацию
-                    navigateBasedOnAuth();
+                    // Сервер доступен — ждём данные для главного экрана
+                    serverReachable = true;
+                    navigateIfReady();
                 } else {
                     // Сервер отвечает но с ошибкой
                     showErrorAndNavigate("Ошибка сервера: " + response.code());
@@ -54,7 +84,22 @@ public class SplashActivity extends AppCompatActivity {
         });
     }
 
+    // Данные не успели загрузиться: в лог — загрузка пулов, чтобы видеть, не в очереди ли дело
+    private void onDeadline() {
+        Log.w(TAG, "Splash deadline reached, executors: " + AppExecutors.stats());
+        navigateBasedOnAuth();
+    }
+
+    private void navigateIfReady() {
+        if (serverReachable && (dataReady || !sharedPrefManager.isLoggedIn())) {
+            navigateBasedOnAuth();
+        }
+    }
+
     private void navigateBasedOnAuth() {
+        if (!markNavigated()) {
+            return;
+        }
         if (sharedPrefManager.isLoggedIn()) {
             // Пользователь авторизован
             startActivity(new Intent(SplashActivity.this, MainActivity.class));
@@ -66,9 +111,22 @@ public class SplashActivity extends AppCompatActivity {
     }
 
     private void showErrorAndNavigate(String message) {
+        if (!markNavigated()) {
+            return;
+        }
         Toast.makeText(SplashActivity.this, message, Toast.LENGTH_LONG).show();
         // Все равно переходим к логину, но показываем ошибку
         startActivity(new Intent(SplashActivity.this, LoginActivity.class));
         finish();
     }
-}
\ No newline at end of file
+
+    // Переход выполняется один раз: по готовности данных, ошибке или сроку
+    private boolean markNavigated() {
+        if (navigated || isFinishing()) {
+            return false;
+        }
+        navigated = true;
+        handler.removeCallbacks(deadline);
+        return true;
+    }
+}
@@ -3,19 +3,23 @@ package com.project.smarthome.adapters;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.CompoundButton;
 import android.widget.ImageView;
 import android.widget.Switch;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
+import android.content.res.ColorStateList;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 import com.project.smarthome.R;
 import com.project.smarthome.models.devices.Device;
 import java.util.List;
+import java.util.Objects;
 
 public class DeviceAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
 
-    private List<Device> devices;
     private boolean isGridMode = true;
     private OnDeviceClickListener listener;
 
@@ -23,24 +27,71 @@ public class DeviceAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
     private static final int TYPE_GRID = 0;
     private static final int TYPE_LIST = 1;
 
+    // Изменилось только состояние — перерисовываем статус, а не всю карточку
+    private static final Object PAYLOAD_STATE = new Object();
+
+    // Устройство с неподтверждённой командой показываем полупрозрачным
+    private static final float PENDING_ALPHA = 0.5f;
+
+    private static final DiffUtil.ItemCallback<Device> DIFF_CALLBACK = new DiffUtil.ItemCallback<Device>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Device oldItem, @NonNull Device newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Device oldItem, @NonNull Device newItem) {
+            return sameCard(oldItem, newItem) && sameState(oldItem, newItem);
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull Device oldItem, @NonNull Device newItem) {
+            return sameCard(oldItem, newItem) ? PAYLOAD_STATE : null;
+        }
+    };
+
+    // Список сравнивается в фоновом потоке, в главный приходят только изменения
+    private final AsyncListDiffer<Device> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+
     public interface OnDeviceClickListener {
         void onDeviceClick(Device device);
         void onDeviceToggle(Device device, boolean isOn);
     }
 
     public DeviceAdapter(List<Device> devices, OnDeviceClickListener listener) {
-        this.devices = devices;
         this.listener = listener;
+        setHasStableIds(true);
+        setDevices(devices);
     }
 
+    /**
+     * Передаёт новый список. После передачи список и устройства в нём не должны меняться:
+     * повторная передача того же списка ничего не пересчитывает.
+     */
     public void setDevices(List<Device> devices) {
-        this.devices = devices;
-        notifyDataSetChanged();
+        differ.submitList(devices);
     }
 
     public void setGridMode(boolean gridMode) {
+        if (this.isGridMode == gridMode) {
+            return;
+        }
         this.isGridMode = gridMode;
-        notifyDataSetChanged();
+        // Меняется разметка карточек — перепривязываем все элементы
+        notifyItemRangeChanged(0, getItemCount());
+    }
+
+    /**
+     * Вернуть карточку к состоянию из списка (например, после отмены переключения в диалоге)
+     */
+    public void resetDevice(int deviceId) {
+        List<Device> devices = differ.getCurrentList();
+        for (int i = 0; i < devices.size(); i++) {
+            if (devices.get(i).getId() == deviceId) {
+                notifyItemChanged(i, PAYLOAD_STATE);
+                return;
+            }
+        }
     }
 
     @Override
@@ -48,6 +99,11 @@ public class DeviceAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
         return isGridMode ? TYPE_GRID : TYPE_LIST;
     }
 
+    @Override
+    public long getItemId(int position) {
+        return differ.getCurrentList().get(position).getId();
+    }
+
     @NonNull
     @Override
     public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -64,7 +120,7 @@ public class DeviceAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
 
     @Override
     public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
-        Device device = devices.get(position);
+        Device device = differ.getCurrentList().get(position);
 
         if (holder instanceof GridViewHolder) {
             ((GridViewHolder) holder).bind(device);
@@ -73,9 +129,45 @@ public class DeviceAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
         }
     }
 
+    @Override
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position,
+                                 @NonNull List<Object> payloads) {
+        if (!payloads.contains(PAYLOAD_STATE)) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+
+        Device device = differ.getCurrentList().get(position);
+        if (holder instanceof GridViewHolder) {
+            ((GridViewHolder) holder).bindState(device);
+        } else if (holder instanceof ListViewHolder) {
+            ((ListViewHolder) holder).bindState(device);
+        }
+    }
+
     @Override
     public int getItemCount() {
-        return devices != null ? devices.size() : 0;
+        return differ.getCurrentList().size();
+    }
+
+    // Актуальное устройство для позиции холдера: слушатели не держат устаревший объект
+    private Device deviceAt(RecyclerView.ViewHolder holder) {
+        int position = holder.getBindingAdapterPosition();
+        if (position == RecyclerView.NO_POSITION) {
+            return null;
+        }
+        return differ.getCurrentList().get(position);
+    }
+
+    private static boolean sameCard(Device oldItem, Device newItem) {
+        return Objects.equals(oldItem.getName(), newItem.getName())
+                && Objects.equals(oldItem.getType(), newItem.getType())
+                && Objects.equals(oldItem.getRoomId(), newItem.getRoomId());
+    }
+
+    private static boolean sameState(Device oldItem, Device newItem) {
+        return Objects.equals(oldItem.getState(), newItem.getState())
+                && oldItem.isPending() == newItem.isPending();
     }
 
     // Вспомогательные методы для проверки состояния устройства
@@ -103,6 +195,7 @@ public class DeviceAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
         private TextView name;
         private TextView status;
         private View cardView;
+        private final ColorStateList defaultStatusColors;
 
         public GridViewHolder(@NonNull View itemView) {
             super(itemView);
@@ -110,6 +203,15 @@ public class DeviceAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
             name = itemView.findViewById(R.id.device_name);
             status = itemView.findViewById(R.id.device_status);
             cardView = itemView.findViewById(R.id.device_card);
+            defaultStatusColors = status.getTextColors();
+
+            // Обработка клика
+            cardView.setOnClickListener(v -> {
+                Device device = deviceAt(this);
+                if (listener != null && device != null) {
+                    listener.onDeviceClick(device);
+                }
+            });
         }
 
         public void bind(Device device) {
@@ -119,38 +221,53 @@ public class DeviceAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
             switch (device.getType()) {
                 case "lamp":
                     icon.setImageResource(R.drawable.ic_lamp);
+                    break;
+                case "motion_sensor":
+                    icon.setImageResource(R.drawable.ic_motion_sensor);
+                    break;
+                case "temp_sensor":
+                    icon.setImageResource(R.drawable.ic_temp_sensor);
+                    break;
+                default:
+                    icon.setImageResource(R.drawable.ic_siren);
+                    break;
+            }
+
+            bindState(device);
+        }
+
+        public void bindState(Device device) {
+            // Цвет по умолчанию — иначе переиспользованная карточка сохранит цвет лампы
+            status.setTextColor(defaultStatusColors);
+
+            switch (device.getType()) {
+                case "lamp":
                     boolean isLampOn = isDeviceOn(device);
                     status.setText(isLampOn ? "Вкл" : "Выкл");
                     status.setTextColor(ContextCompat.getColor(itemView.getContext(),
                             isLampOn ? R.color.green : R.color.gray));
                     break;
                 case "motion_sensor":
-                    icon.setImageResource(R.drawable.ic_motion_sensor);
                     boolean isMotion = isMotionDetected(device);
                     status.setText(isMotion ? "Обнаружено" : "Нет движения");
                     break;
                 case "temp_sensor":
-                    icon.setImageResource(R.drawable.ic_temp_sensor);
                     String temp = getTemperature(device);
                     status.setText(temp + "°C");
                     break;
                 case "siren":
-                    icon.setImageResource(R.drawable.ic_siren);
                     boolean isSirenOn = isDeviceOn(device);
                     status.setText(isSirenOn ? "Тревога" : "Выкл");
                     break;
                 default:
-                    icon.setImageResource(R.drawable.ic_siren);
                     status.setText(device.getState());
                     break;
             }
 
-            // Обработка клика
-            cardView.setOnClickListener(v -> {
-                if (listener != null) {
-                    listener.onDeviceClick(device);
-                }
-            });
+            if (device.isPending()) {
+                status.append("…");
+            }
+            cardView.setAlpha(device.isPending() ? PENDING_ALPHA : 1f);
         }
     }
 
@@ -161,12 +278,28 @@ public class DeviceAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
         private TextView description;
         private Switch toggle;
 
+        private final CompoundButton.OnCheckedChangeListener toggleListener =
+                (buttonView, isChecked) -> {
+                    Device device = deviceAt(this);
+                    if (listener != null && device != null) {
+                        listener.onDeviceToggle(device, isChecked);
+                    }
+                };
+
         public ListViewHolder(@NonNull View itemView) {
             super(itemView);
             icon = itemView.findViewById(R.id.device_icon);
             name = itemView.findViewById(R.id.device_name);
             description = itemView.findViewById(R.id.device_description);
             toggle = itemView.findViewById(R.id.device_toggle);
+
+            // Обработка клика на всю карточку
+            itemView.setOnClickListener(v -> {
+                Device device = deviceAt(this);
+                if (listener != null && device != null) {
+                    listener.onDeviceClick(device);
+                }
+            });
         }
 
         public void bind(Device device) {
@@ -175,50 +308,59 @@ public class DeviceAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
             switch (device.getType()) {
                 case "lamp":
                     icon.setImageResource(R.drawable.ic_lamp);
+                    break;
+                case "motion_sensor":
+                    icon.setImageResource(R.drawable.ic_motion_sensor);
+                    break;
+                case "temp_sensor":
+                    icon.setImageResource(R.drawable.ic_temp_sensor);
+                    break;
+                default:
+                    icon.setImageResource(R.drawable.ic_siren);
+                    break;
+            }
+
+            bindState(device);
+        }
+
+        public void bindState(Device device) {
+            // Снимаем слушатель, иначе setChecked при перепривязке отправит лишнюю команду
+            toggle.setOnCheckedChangeListener(null);
+
+            switch (device.getType()) {
+                case "lamp":
                     boolean isLampOn = isDeviceOn(device);
                     description.setText("Яркость: " + getBrightness(device) + "%");
                     toggle.setChecked(isLampOn);
                     toggle.setVisibility(View.VISIBLE);
                     break;
                 case "motion_sensor":
-                    icon.setImageResource(R.drawable.ic_motion_sensor);
                     boolean isMotion = isMotionDetected(device);
                     description.setText(isMotion ? "Движение обнаружено" : "Нет движения");
                     toggle.setVisibility(View.GONE);
                     break;
                 case "temp_sensor":
-                    icon.setImageResource(R.drawable.ic_temp_sensor);
                     String temp = getTemperature(device);
                     description.setText("Температура: " + temp + "°C");
                     toggle.setVisibility(View.GONE);
                     break;
                 case "siren":
-                    icon.setImageResource(R.drawable.ic_siren);
                     boolean isSirenOn = isDeviceOn(device);
                     description.setText(isSirenOn ? "Тревога активна" : "Система охраны");
                     toggle.setChecked(isSirenOn);
                     toggle.setVisibility(View.VISIBLE);
                     break;
                 default:
-                    icon.setImageResource(R.drawable.ic_siren);
                     description.setText(device.getState());
                     toggle.setVisibility(View.GONE);
                     break;
             }
 
-            // Обработка переключения
-            toggle.setOnCheckedChangeListener((buttonView, isChecked) -> {
-                if (listener != null) {
-                    listener.onDeviceToggle(device, isChecked);
-                }
-            });
+            icon.setAlpha(device.isPending() ? PENDING_ALPHA : 1f);
+            description.setAlpha(device.isPending() ? PENDING_ALPHA : 1f);
 
-            // Обработка клика на всю карточку
-            itemView.setOnClickListener(v -> {
-                if (listener != null) {
-                    listener.onDeviceClick(device);
-                }
-            });
+            // Обработка переключения
+            toggle.setOnCheckedChangeListener(toggleListener);
         }
     }
-}
\ No newline at end of file
+}
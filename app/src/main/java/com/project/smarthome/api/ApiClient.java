@@ -1,27 +1,68 @@
 package com.project.smarthome.api;
 
 import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import com.project.smarthome.database.AppDatabase;
+import com.project.smarthome.utils.ConnectivityMonitor;
 import com.project.smarthome.utils.SharedPrefManager;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
-import okhttp3.logging.HttpLoggingInterceptor;
+import retrofit2.Invocation;
 import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
 
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Один OkHttp-клиент и один экземпляр ApiService на всё приложение.
+ * Смена адреса сервера и выход из аккаунта не пересоздают клиент: пул соединений
+ * и TLS-сессии переиспользуются всеми репозиториями, WebSocket и push-сервисом.
+ */
 public class ApiClient {
+
+    // Все запросы идут на один сервер: стандартные 5 запросов на хост слишком мало.
+    // Число одновременных сетевых запросов по приоритетам ограничивает PriorityDispatcher,
+    // здесь запас, чтобы ожидающие в нём запросы не задерживали команды в очереди OkHttp
+    public static final int MAX_REQUESTS = 64;
+    public static final int MAX_REQUESTS_PER_HOST = 32;
+    // Простаивающие соединения держим дольше стандартных 5 минут, чтобы не повторять TLS-рукопожатие
+    public static final int MAX_IDLE_CONNECTIONS = 8;
+    public static final long KEEP_ALIVE_MINUTES = 10;
+
     private static Retrofit retrofit = null;
-    private static String currentBaseUrl = "https://smart-home-x8tm.onrender.com/"; // Добавьте сюда ваш URL по умолчанию
+    private static OkHttpClient okHttpClient = null;
+    private static ApiService apiService = null;
+    private static TokenAuthenticator tokenAuthenticator = null;
+    private static NetworkDiagnosticsInterceptor diagnostics = null;
+    private static final PriorityDispatcher priorityDispatcher = new PriorityDispatcher();
+    private static boolean debuggable = false;
+    private static ConnectivityMonitor connectivityMonitor;
+    private static volatile String currentBaseUrl = "https://smart-home-x8tm.onrender.com/"; // Добавьте сюда ваш URL по умолчанию
+    private static final BaseUrlInterceptor baseUrlInterceptor = new BaseUrlInterceptor(currentBaseUrl);
     private static SharedPrefManager sharedPrefManager;
+    private static Context appContext;
+    private static final ConditionalGetCache conditionalGetCache = new ConditionalGetCache();
+    private static final ApiMetrics apiMetrics = new ApiMetrics();
 
     // Инициализация должна быть вызвана в Application классе или первой Activity
-    public static void initialize(Context context) {
+    public static synchronized void initialize(Context context) {
         if (sharedPrefManager == null) {
-            sharedPrefManager = SharedPrefManager.getInstance(context.getApplicationContext());
+            appContext = context.getApplicationContext();
+            sharedPrefManager = SharedPrefManager.getInstance(appContext);
+            debuggable = (context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+
+            // Фоновые запросы ждут сети без лимита трафика
+            connectivityMonitor = ConnectivityMonitor.getInstance(context);
+            connectivityMonitor.addListener((online, metered) -> updateBackgroundGate());
+            updateBackgroundGate();
 
             // Восстанавливаем сохраненный URL если есть
             String savedUrl = sharedPrefManager.getServerUrl();
             if (savedUrl != null && !savedUrl.isEmpty()) {
                 currentBaseUrl = savedUrl;
+                baseUrlInterceptor.setBaseUrl(savedUrl);
             }
 
             // Восстанавливаем токен
@@ -32,23 +73,40 @@ public class ApiClient {
         }
     }
 
-    public static Retrofit getClient() {
+    public static synchronized Retrofit getClient() {
         if (retrofit == null) {
             if (sharedPrefManager == null) {
                 throw new IllegalStateException("ApiClient not initialized. Call ApiClient.initialize(context) first.");
             }
 
-            OkHttpClient.Builder httpClient = new OkHttpClient.Builder();
+            Dispatcher dispatcher = new Dispatcher();
+            dispatcher.setMaxRequests(MAX_REQUESTS);
+            dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+
+            OkHttpClient.Builder httpClient = new OkHttpClient.Builder()
+                    .dispatcher(dispatcher)
+                    .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES));
+
+            // Адрес сервера подставляется здесь, до остальных interceptor'ов
+            httpClient.addInterceptor(baseUrlInterceptor);
+
+            // 401 — одно обновление токена на все ожидающие запросы
+            tokenAuthenticator = new TokenAuthenticator(sharedPrefManager);
+            httpClient.authenticator(tokenAuthenticator);
+
+            // Без сети — ошибка сразу, без ожидания таймаута и повторов
+            httpClient.addInterceptor(new ConnectivityInterceptor(connectivityMonitor));
 
             // Interceptor для добавления токена авторизации
             httpClient.addInterceptor(chain -> {
                 Request original = chain.request();
                 Request.Builder requestBuilder = original.newBuilder();
 
-                // Добавляем токен если есть
-                String token = sharedPrefManager.getToken();
-                if (token != null && !token.isEmpty()) {
-                    requestBuilder.header("Authorization", "Bearer " + token);
+                // Добавляем токен если есть (берётся из памяти, см. SharedPrefManager);
+                // вход и регистрация (@NoAuth) идут без него
+                String authHeader = sharedPrefManager.getAuthHeader();
+                if (authHeader != null && !isNoAuth(original)) {
+                    requestBuilder.header("Authorization", authHeader);
                 }
 
                 // Стандартные заголовки
@@ -58,49 +116,142 @@ public class ApiClient {
                 return chain.proceed(requestBuilder.build());
             });
 
-            // Логирование для отладки
-            HttpLoggingInterceptor logging = new HttpLoggingInterceptor();
-            logging.setLevel(HttpLoggingInterceptor.Level.BODY);
-            httpClient.addInterceptor(logging);
+            // Повторы GET с задержкой и предохранитель на случай недоступного сервера
+            httpClient.addInterceptor(new ResilienceInterceptor());
+
+            // Очередь по приоритетам; стоит внутри повторов, чтобы пауза между ними не занимала место
+            httpClient.addInterceptor(priorityDispatcher);
+
+            // Условные GET-запросы (ETag / If-None-Match)
+            httpClient.addInterceptor(new ConditionalGetInterceptor(conditionalGetCache));
+
+            // Сводка по запросам; тела — только выборочно (см. NetworkDiagnosticsInterceptor)
+            diagnostics = new NetworkDiagnosticsInterceptor(debuggable);
+            httpClient.addInterceptor(diagnostics);
+
+            okHttpClient = httpClient.build();
 
             retrofit = new Retrofit.Builder()
-                    .baseUrl(currentBaseUrl)
-                    .client(httpClient.build())
+                    .baseUrl(BaseUrlInterceptor.PLACEHOLDER_BASE_URL)
+                    .client(okHttpClient)
                     .addConverterFactory(GsonConverterFactory.create())
+                    .addCallAdapterFactory(new FutureCallAdapterFactory(apiMetrics))
                     .build();
+            apiService = retrofit.create(ApiService.class);
         }
         return retrofit;
     }
 
+    private static boolean isNoAuth(Request request) {
+        Invocation invocation = request.tag(Invocation.class);
+        return invocation != null && invocation.method().isAnnotationPresent(NoAuth.class);
+    }
+
+    private static void updateBackgroundGate() {
+        if (!connectivityMonitor.isOnline() || connectivityMonitor.isMetered()) {
+            priorityDispatcher.pauseBackground();
+        } else {
+            priorityDispatcher.resumeBackground();
+        }
+    }
+
+    // Приостановка фоновых запросов, лимиты по приоритетам
+    public static PriorityDispatcher getPriorityDispatcher() {
+        return priorityDispatcher;
+    }
+
+    public static NetworkDiagnosticsInterceptor getDiagnostics() {
+        getClient();
+        return diagnostics;
+    }
+
+    /**
+     * Способ получить новый токен при 401 (по умолчанию нет — сессия просто сбрасывается)
+     */
+    public static void setTokenRefresher(TokenAuthenticator.TokenRefresher refresher) {
+        getClient();
+        tokenAuthenticator.setTokenRefresher(refresher);
+    }
+
+    /**
+     * Уведомление об истёкшей сессии — например, чтобы открыть экран входа
+     */
+    public static void setSessionListener(TokenAuthenticator.SessionListener listener) {
+        getClient();
+        tokenAuthenticator.setSessionListener(listener);
+    }
+
+    /**
+     * Изменить лимиты одновременных запросов без пересоздания клиента
+     */
+    public static void setDispatcherLimits(int maxRequests, int maxRequestsPerHost) {
+        Dispatcher dispatcher = getHttpClient().dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+    }
+
+    // Общий OkHttp клиент (interceptor авторизации и т.д.) — например, для WebSocket
+    public static OkHttpClient getHttpClient() {
+        getClient();
+        return okHttpClient;
+    }
+
+    public static String getBaseUrl() {
+        return currentBaseUrl;
+    }
+
+    public static ConditionalGetCache getConditionalGetCache() {
+        return conditionalGetCache;
+    }
+
+    // Задержки и исходы запросов по эндпоинтам
+    public static ApiMetrics getApiMetrics() {
+        return apiMetrics;
+    }
+
     public static ApiService getApiService(Context context) {
         initialize(context);
-        return getClient().create(ApiService.class);
+        return getApiService();
     }
 
     public static ApiService getApiService() {
         if (sharedPrefManager == null) {
             throw new IllegalStateException("ApiClient not initialized. Call ApiClient.initialize(context) first.");
         }
-        return getClient().create(ApiService.class);
+        getClient();
+        return apiService;
     }
 
-    public static void updateServerUrl(String newUrl) {
+    public static synchronized void updateServerUrl(String newUrl) {
         String formattedUrl = newUrl.endsWith("/") ? newUrl : newUrl + "/";
         currentBaseUrl = formattedUrl;
         if (sharedPrefManager != null) {
             sharedPrefManager.saveServerUrl(formattedUrl);
         }
-        retrofit = null; // Пересоздаем клиент с новым URL
+        // Клиент остаётся прежним — меняется только адрес в запросах
+        baseUrlInterceptor.setBaseUrl(formattedUrl);
+        // Сохранённые ответы относятся к старому серверу
+        conditionalGetCache.clear();
     }
 
     public static boolean isLoggedIn() {
         return sharedPrefManager != null && sharedPrefManager.isLoggedIn();
     }
 
-    public static void logout() {
+    public static synchronized void logout() {
         if (sharedPrefManager != null) {
             sharedPrefManager.clearAll();
         }
-        retrofit = null;
+        conditionalGetCache.clear();
+        // Разрешения на прямое управление в домашней сети выдавались прежнему пользователю
+        LanMqttClient.forgetAuthorizations();
+        // Запросы прежнего пользователя больше не нужны; соединения с сервером остаются в пуле
+        if (okHttpClient != null) {
+            okHttpClient.dispatcher().cancelAll();
+        }
+        // Кэш домов и устройств и неотправленные команды прежнего пользователя
+        if (appContext != null) {
+            AppDatabase.clearOnLogout(appContext);
+        }
     }
 }
\ No newline at end of file
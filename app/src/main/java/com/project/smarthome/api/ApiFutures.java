@@ -0,0 +1,181 @@
+package com.project.smarthome.api;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import retrofit2.HttpException;
+
+/**
+ * Вспомогательные методы для future, которые возвращает ApiService
+ */
+public final class ApiFutures {
+
+    private ApiFutures() {
+    }
+
+    /**
+     * Отмена производного future (thenApply, thenCompose, ...) по умолчанию не доходит до запроса.
+     * После этого вызова отмена derived отменяет и source, а значит и HTTP-запрос.
+     */
+    public static <T> CompletableFuture<T> propagateCancel(CompletableFuture<T> derived,
+                                                           CompletableFuture<?> source) {
+        derived.whenComplete((result, error) -> {
+            if (derived.isCancelled()) {
+                source.cancel(true);
+            }
+        });
+        return derived;
+    }
+
+    /**
+     * Аналог first.thenCompose(next), у которого отмена результата отменяет и first,
+     * и future, созданный next (если он уже создан; если нет — next не вызывается).
+     */
+    public static <A, B> CompletableFuture<B> thenComposeCancellable(
+            CompletableFuture<A> first,
+            Function<A, CompletableFuture<B>> next
+    ) {
+        CompletableFuture<B> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<B>> second = new AtomicReference<>();
+
+        first.whenComplete((value, error) -> {
+            if (result.isDone()) {
+                return;
+            }
+            if (error != null) {
+                result.completeExceptionally(unwrap(error));
+                return;
+            }
+            CompletableFuture<B> stage;
+            try {
+                stage = next.apply(value);
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            second.set(stage);
+            if (result.isCancelled()) {
+                stage.cancel(true);
+                return;
+            }
+            stage.whenComplete((secondValue, secondError) -> {
+                if (secondError != null) {
+                    result.completeExceptionally(unwrap(secondError));
+                } else {
+                    result.complete(secondValue);
+                }
+            });
+        });
+
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                first.cancel(true);
+                CompletableFuture<B> stage = second.get();
+                if (stage != null) {
+                    stage.cancel(true);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Аналог first.exceptionallyCompose(fallback) из Java 12 с той же отменой, что у
+     * thenComposeCancellable: отмена результата отменяет first и future, созданный fallback.
+     * Отмена first ошибкой не считается — fallback не вызывается.
+     */
+    public static <T> CompletableFuture<T> recoverCancellable(
+            CompletableFuture<T> first,
+            Function<Throwable, CompletableFuture<T>> fallback
+    ) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<T>> second = new AtomicReference<>();
+
+        first.whenComplete((value, error) -> {
+            if (result.isDone()) {
+                return;
+            }
+            if (error == null) {
+                result.complete(value);
+                return;
+            }
+            Throwable cause = unwrap(error);
+            if (cause instanceof CancellationException) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            CompletableFuture<T> stage;
+            try {
+                stage = fallback.apply(cause);
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            second.set(stage);
+            if (result.isCancelled()) {
+                stage.cancel(true);
+                return;
+            }
+            stage.whenComplete((secondValue, secondError) -> {
+                if (secondError != null) {
+                    result.completeExceptionally(unwrap(secondError));
+                } else {
+                    result.complete(secondValue);
+                }
+            });
+        });
+
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                first.cancel(true);
+                CompletableFuture<T> stage = second.get();
+                if (stage != null) {
+                    stage.cancel(true);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Завершился ли future отменой (а не ошибкой)
+     */
+    public static boolean isCancellation(Throwable error) {
+        return unwrap(error) instanceof CancellationException;
+    }
+
+    /**
+     * Ошибку HTTP заменяет на RuntimeException вида "message: код", сетевые ошибки не трогает
+     */
+    public static <T> CompletableFuture<T> withErrorMessage(CompletableFuture<T> call, String message) {
+        CompletableFuture<T> result = call.handle((value, error) -> {
+            if (error == null) {
+                return value;
+            }
+            Throwable cause = unwrap(error);
+            if (cause instanceof HttpException) {
+                throw new RuntimeException(message + ": " + ((HttpException) cause).code(), cause);
+            }
+            throw cause instanceof RuntimeException
+                    ? (RuntimeException) cause
+                    : new CompletionException(cause);
+        });
+        return propagateCancel(result, call);
+    }
+
+    /**
+     * Исходная причина без обёрток CompletionException / ExecutionException
+     */
+    public static Throwable unwrap(Throwable error) {
+        Throwable current = error;
+        while ((current instanceof CompletionException || current instanceof ExecutionException)
+                && current.getCause() != null) {
+            current = current.getCause();
+        }
+        return current;
+    }
+}
@@ -0,0 +1,111 @@
+package com.project.smarthome.api;
+
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Задержки и исходы запросов по эндпоинтам ("GET api/devices/{device_id}").
+ * Заполняется FutureCallAdapterFactory, читается через ApiClient.getApiMetrics().
+ */
+public class ApiMetrics {
+
+    private static final String TAG = "ApiMetrics";
+
+    public static final String OUTCOME_OK = "ok";
+    public static final String OUTCOME_NOT_MODIFIED = "not_modified";
+    public static final String OUTCOME_HTTP_ERROR = "http_error";
+    public static final String OUTCOME_TIMEOUT = "timeout";
+    public static final String OUTCOME_NETWORK_ERROR = "network_error";
+    public static final String OUTCOME_CANCELLED = "cancelled";
+
+    // Для p95 хранятся последние LATENCY_WINDOW задержек успешных ответов
+    private static final int LATENCY_WINDOW = 64;
+    // Меньше этого числа замеров p95 не считаем и запросы не дублируем
+    public static final int HEDGE_MIN_SAMPLES = 20;
+    public static final long HEDGE_MIN_DELAY_MS = 200;
+
+    public static final class EndpointStats {
+        private long count;
+        private long totalMs;
+        private long maxMs;
+        private final Map<String, Long> outcomes = new HashMap<>();
+        private final long[] recentLatencies = new long[LATENCY_WINDOW];
+        private int recentCount;
+
+        synchronized void record(long latencyMs, String outcome) {
+            count++;
+            totalMs += latencyMs;
+            maxMs = Math.max(maxMs, latencyMs);
+            Long previous = outcomes.get(outcome);
+            outcomes.put(outcome, previous == null ? 1 : previous + 1);
+            if (OUTCOME_OK.equals(outcome) || OUTCOME_NOT_MODIFIED.equals(outcome)) {
+                recentLatencies[recentCount % LATENCY_WINDOW] = latencyMs;
+                recentCount++;
+            }
+        }
+
+        /**
+         * 95-й перцентиль задержки по последним успешным ответам, -1 — мало данных
+         */
+        public synchronized long getP95Ms() {
+            int size = Math.min(recentCount, LATENCY_WINDOW);
+            if (size < HEDGE_MIN_SAMPLES) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(recentLatencies, size);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.ceil(size * 0.95) - 1];
+        }
+
+        public synchronized long getCount() { return count; }
+        public synchronized long getMaxMs() { return maxMs; }
+        public synchronized long getAverageMs() { return count == 0 ? 0 : totalMs / count; }
+
+        public synchronized long getOutcomeCount(String outcome) {
+            Long value = outcomes.get(outcome);
+            return value == null ? 0 : value;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "count=" + count + " avg=" + getAverageMs() + "ms p95=" + getP95Ms()
+                    + "ms max=" + maxMs + "ms " + outcomes;
+        }
+    }
+
+    private final Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+
+    void record(String endpoint, long latencyMs, String outcome) {
+        stats.computeIfAbsent(endpoint, key -> new EndpointStats()).record(latencyMs, outcome);
+
+        if (!OUTCOME_OK.equals(outcome) && !OUTCOME_NOT_MODIFIED.equals(outcome)) {
+            Log.w(TAG, endpoint + " " + outcome + " за " + latencyMs + " мс");
+        }
+    }
+
+    /**
+     * Через сколько отправлять дублирующий запрос (@Hedged), -1 — не дублировать
+     */
+    long hedgeDelayMs(String endpoint) {
+        EndpointStats endpointStats = stats.get(endpoint);
+        long p95 = endpointStats != null ? endpointStats.getP95Ms() : -1;
+        return p95 < 0 ? -1 : Math.max(HEDGE_MIN_DELAY_MS, p95);
+    }
+
+    public EndpointStats get(String endpoint) {
+        return stats.get(endpoint);
+    }
+
+    public Map<String, EndpointStats> snapshot() {
+        return new LinkedHashMap<>(stats);
+    }
+
+    public void clear() {
+        stats.clear();
+    }
+}
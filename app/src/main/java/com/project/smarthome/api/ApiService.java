@@ -13,10 +13,16 @@ import com.project.smarthome.models.homes.room.RoomResponse;
 
 
 import retrofit2.Call;
+import retrofit2.Response;
 import retrofit2.http.*;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+/**
+ * Методы, возвращающие CompletableFuture, обслуживает FutureCallAdapterFactory:
+ * срок выполнения, отмена запроса через future и метрики в ApiMetrics.
+ */
 public interface ApiService {
 
     // ----------------------------------------
@@ -24,10 +30,12 @@ public interface ApiService {
     // ----------------------------------------
 
     // Регистрация
+    @NoAuth
     @POST("api/auth/register")
     Call<RegisterResponse> register(@Body RegisterRequest request);
 
     // Логин (JWT)
+    @NoAuth
     @POST("api/auth/token")
     Call<TokenResponse> login(@Body LoginRequest request);
 
@@ -46,39 +54,40 @@ public interface ApiService {
     );
 
     @GET("api/family/my-homes")
-    Call<List<HomeResponse>> getMyHomes(
+    CompletableFuture<List<HomeResponse>> getMyHomes(
             @Header("Authorization") String token
     );
 
     @POST("api/family/homes")
-    Call<HomeResponse> createHome(
+    CompletableFuture<HomeResponse> createHome(
             @Header("Authorization") String token,
             @Body HomeCreateRequest request
     );
     // ----------------------------------------
     // FAMILY MEMBERS
     //
+    // families/*: ответ целиком — пустое тело 2xx допустимо, FamilyRepository вернёт null
     @POST("families")
-    Call<FamilyResponse> createFamily(
+    CompletableFuture<Response<FamilyResponse>> createFamily(
             @Header("Authorization") String token,
             @Body FamilyCreateRequest request
     );
 
     @GET("families/{id}")
-    Call<FamilyResponse> getFamily(
+    CompletableFuture<Response<FamilyResponse>> getFamily(
             @Header("Authorization") String token,
             @Path("id") int id
     );
 
     @PUT("families/{id}")
-    Call<FamilyResponse> updateFamily(
+    CompletableFuture<Response<FamilyResponse>> updateFamily(
             @Header("Authorization") String token,
             @Path("id") int id,
             @Body FamilyUpdateRequest request
     );
 
     @GET("api/family/homes/{home_id}/members")
-    Call<List<FamilyMember>> getFamilyMembers(@Path("home_id") int homeId);
+    CompletableFuture<List<FamilyMember>> getFamilyMembers(@Path("home_id") int homeId);
 
     @POST("api/family/homes/{home_id}/members")
     Call<Map<String, Object>> addFamilyMember(@Path("home_id") int homeId, @Body FamilyMemberAdd request);
@@ -93,13 +102,13 @@ public interface ApiService {
 
 
     @GET("api/rooms/homes/{home_id}")
-    Call<List<RoomResponse>> getRooms(
+    CompletableFuture<List<RoomResponse>> getRooms(
             @Header("Authorization") String token,
             @Path("home_id") int homeId
     );
 
     @POST("api/rooms/homes/{home_id}")
-    Call<RoomResponse> createRoom(
+    CompletableFuture<RoomResponse> createRoom(
             @Header("Authorization") String token,
             @Path("home_id") int homeId,
             @Body RoomCreateRequest request
@@ -114,16 +123,55 @@ public interface ApiService {
     Call<List<Device>> getDevices(@Path("home_id") int homeId);
 
     @POST("api/devices/homes/{home_id}")
-    Call<Device> createDevice(@Path("home_id") int homeId, @Body DeviceCreateRequest device);
+    CompletableFuture<Device> createDevice(@Path("home_id") int homeId, @Body DeviceCreateRequest device);
 
+    @CallDeadline(10_000)
     @POST("api/devices/{device_id}/action")
-    Call<Map<String, Object>> controlDevice(
+    CompletableFuture<Map<String, Object>> controlDevice(
             @Path("device_id") int deviceId,
             @Query("new_state") String newState
     );
 
+    @Hedged
     @GET("api/devices/{device_id}")
-    Call<Device> getDevice(@Path("device_id") int deviceId);
+    CompletableFuture<Device> getDevice(@Path("device_id") int deviceId);
+
+    // Delta-синхронизация: только устройства, изменённые после since, и отметки об удалении
+    @GET("api/devices/homes/{home_id}")
+    CompletableFuture<List<Device>> getDeviceChanges(
+            @Path("home_id") int homeId,
+            @Query("since") String since
+    );
+
+    // Пакетное управление: одна транзакция и один проход публикации в MQTT
+    @CallDeadline(10_000)
+    @POST("api/devices/actions")
+    CompletableFuture<BulkDeviceActionResponse> controlDevices(@Body BulkDeviceActionRequest request);
+
+
+    // ----------------------------------------
+    // CONDITIONAL GET (ETag / If-None-Match)
+    // При 304 тело не приходит — ответ берётся из ConditionalGetCache,
+    // поэтому методы возвращают Response целиком
+    // ----------------------------------------
+
+    @Headers(ConditionalGetCache.CONDITIONAL_HEADER + ": true")
+    @Hedged
+    @GET("api/devices/homes/{home_id}")
+    CompletableFuture<Response<List<Device>>> getDevicesIfModified(@Path("home_id") int homeId);
+
+    @Headers(ConditionalGetCache.CONDITIONAL_HEADER + ": true")
+    @Hedged
+    @GET("api/rooms/homes/{home_id}")
+    CompletableFuture<Response<List<RoomResponse>>> getRoomsIfModified(
+            @Header("Authorization") String token,
+            @Path("home_id") int homeId
+    );
+
+    @Headers(ConditionalGetCache.CONDITIONAL_HEADER + ": true")
+    @Hedged
+    @GET("api/family/my-homes")
+    CompletableFuture<Response<List<Home>>> getMyHomesIfModified();
 
 
     // ----------------------------------------
@@ -141,13 +189,17 @@ public interface ApiService {
     // NOTIFICATIONS
     // ----------------------------------------
 
+    @RequestPriority(RequestPriority.Level.BACKGROUND)
     @GET("notifications/")
     Call<List<Notification>> getNotifications(
             @Header("Authorization") String token
     );
+    // Не BACKGROUND: фоновые запросы на лимитной сети не отправляются, а повторов у вызывающего нет
+    @RequestPriority(RequestPriority.Level.FOREGROUND)
     @POST("api/notifications/push-token")
     Call<ApiResponse> registerPushToken(@Body PushTokenRequest request);
 
+    @RequestPriority(RequestPriority.Level.FOREGROUND)
     @DELETE("api/notifications/push-token")
     Call<ApiResponse> unregisterPushToken(@Body PushTokenRequest request);
 
@@ -0,0 +1,52 @@
+package com.project.smarthome.api;
+
+import java.io.IOException;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Подставляет текущий адрес сервера в запросы Retrofit.
+ *
+ * Retrofit собирается один раз с PLACEHOLDER_BASE_URL, а этот interceptor заменяет схему, хост,
+ * порт и префикс пути на актуальные. Смена сервера — это замена одного поля,
+ * клиент с пулом соединений и TLS-сессиями при этом сохраняется.
+ * Запросы на другие хосты (например, WebSocket) не изменяются.
+ */
+public class BaseUrlInterceptor implements Interceptor {
+
+    public static final String PLACEHOLDER_BASE_URL = "http://api.placeholder/";
+
+    private static final HttpUrl PLACEHOLDER = HttpUrl.get(PLACEHOLDER_BASE_URL);
+
+    private volatile HttpUrl baseUrl;
+
+    public BaseUrlInterceptor(String baseUrl) {
+        setBaseUrl(baseUrl);
+    }
+
+    public void setBaseUrl(String baseUrl) {
+        this.baseUrl = HttpUrl.get(baseUrl);
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request original = chain.request();
+        HttpUrl url = original.url();
+        if (!url.host().equals(PLACEHOLDER.host())) {
+            return chain.proceed(original);
+        }
+
+        HttpUrl base = baseUrl;
+        // Путь запроса относительно заглушки дописывается к пути базового адреса
+        String relativePath = url.encodedPath().substring(PLACEHOLDER.encodedPath().length());
+        HttpUrl rewritten = base.newBuilder()
+                .encodedPath(base.encodedPath() + relativePath)
+                .encodedQuery(url.encodedQuery())
+                .build();
+
+        return chain.proceed(original.newBuilder().url(rewritten).build());
+    }
+}
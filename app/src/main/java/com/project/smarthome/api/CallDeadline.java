@@ -0,0 +1,18 @@
+package com.project.smarthome.api;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Собственный срок выполнения запроса ApiService в миллисекундах.
+ * Без аннотации действует FutureCallAdapterFactory.DEFAULT_DEADLINE_MS.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CallDeadline {
+    long value();
+}
@@ -0,0 +1,59 @@
+package com.project.smarthome.api;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.HttpUrl;
+
+/**
+ * Хранилище ETag и уже разобранных ответов для условных GET-запросов.
+ * При ответе 304 репозиторий берёт отсюда готовый объект и не парсит тело заново.
+ */
+public class ConditionalGetCache {
+
+    // Маркер, которым метод ApiService включает условный запрос; на сервер не уходит
+    public static final String CONDITIONAL_HEADER = "X-Conditional-Get";
+
+    public static final int HTTP_NOT_MODIFIED = 304;
+
+    private static final class Entry {
+        final String etag;
+        final Object body;
+
+        Entry(String etag, Object body) {
+            this.etag = etag;
+            this.body = body;
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    // Ключ без хоста, чтобы смена адреса сервера не влияла на поиск
+    private static String keyOf(HttpUrl url) {
+        String query = url.encodedQuery();
+        return query == null ? url.encodedPath() : url.encodedPath() + "?" + query;
+    }
+
+    public String getEtag(HttpUrl url) {
+        Entry entry = entries.get(keyOf(url));
+        return entry != null ? entry.etag : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T getBody(HttpUrl url) {
+        Entry entry = entries.get(keyOf(url));
+        return entry != null ? (T) entry.body : null;
+    }
+
+    public void put(HttpUrl url, String etag, Object body) {
+        if (etag == null || etag.isEmpty() || body == null) {
+            entries.remove(keyOf(url));
+            return;
+        }
+        entries.put(keyOf(url), new Entry(etag, body));
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+}
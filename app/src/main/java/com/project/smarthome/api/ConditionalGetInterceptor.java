@@ -0,0 +1,38 @@
+package com.project.smarthome.api;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Добавляет If-None-Match к запросам, помеченным заголовком
+ * {@link ConditionalGetCache#CONDITIONAL_HEADER}, если для URL уже есть сохранённый ответ.
+ */
+public class ConditionalGetInterceptor implements Interceptor {
+
+    private final ConditionalGetCache cache;
+
+    public ConditionalGetInterceptor(ConditionalGetCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request original = chain.request();
+        if (original.header(ConditionalGetCache.CONDITIONAL_HEADER) == null) {
+            return chain.proceed(original);
+        }
+
+        Request.Builder requestBuilder = original.newBuilder()
+                .removeHeader(ConditionalGetCache.CONDITIONAL_HEADER);
+
+        String etag = cache.getEtag(original.url());
+        if (etag != null) {
+            requestBuilder.header("If-None-Match", etag);
+        }
+
+        return chain.proceed(requestBuilder.build());
+    }
+}
@@ -0,0 +1,38 @@
+package com.project.smarthome.api;
+
+import com.project.smarthome.utils.ConnectivityMonitor;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Без сети запрос завершается сразу OfflineException, а не через таймаут соединения.
+ * Репозитории в этом случае показывают данные из локального снимка.
+ */
+public class ConnectivityInterceptor implements Interceptor {
+
+    /**
+     * Запрос не отправлялся: у устройства нет сети
+     */
+    public static class OfflineException extends IOException {
+        OfflineException() {
+            super("Нет подключения к сети");
+        }
+    }
+
+    private final ConnectivityMonitor monitor;
+
+    public ConnectivityInterceptor(ConnectivityMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        if (!monitor.isOnline()) {
+            throw new OfflineException();
+        }
+        return chain.proceed(chain.request());
+    }
+}
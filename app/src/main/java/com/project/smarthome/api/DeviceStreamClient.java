@@ -0,0 +1,207 @@
+package com.project.smarthome.api;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.project.smarthome.models.devices.Device;
+
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+
+/**
+ * Клиент WebSocket-потока изменений устройств дома.
+ * WS /api/devices/homes/{home_id}/stream
+ *
+ * Все события доставляются в главный поток. При обрыве соединение
+ * восстанавливается с экспоненциальной задержкой.
+ */
+public class DeviceStreamClient {
+
+    private static final String TAG = "DeviceStreamClient";
+
+    private static final long INITIAL_RETRY_DELAY_MS = 1_000;
+    private static final long MAX_RETRY_DELAY_MS = 30_000;
+    private static final int NORMAL_CLOSURE = 1000;
+
+    public interface Listener {
+        void onDeviceUpdate(Device device);
+
+        /**
+         * @param reconnect true, если это восстановление после обрыва —
+         *                  события за время простоя потеряны и список стоит перечитать
+         */
+        void onStreamConnected(boolean reconnect);
+
+        void onStreamDisconnected();
+    }
+
+    // Сообщение потока: {"type": "device", "device": {...}} или {"type": "ping"}
+    private static class StreamEvent {
+        String type;
+        Device device;
+    }
+
+    private final Gson gson = new Gson();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private WebSocket webSocket;
+    private Listener listener;
+    private int homeId = -1;
+    private boolean hasConnected = false;
+    private boolean connected = false;
+    private long retryDelayMs = INITIAL_RETRY_DELAY_MS;
+
+    // Поколение подключения: колбэки старых сокетов игнорируются
+    private int generation = 0;
+
+    public int getHomeId() {
+        return homeId;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Подключиться к потоку дома. Предыдущее подключение закрывается.
+     */
+    public void connect(int homeId, @NonNull Listener listener) {
+        disconnect();
+        this.homeId = homeId;
+        this.listener = listener;
+        this.hasConnected = false;
+        this.connected = false;
+        this.retryDelayMs = INITIAL_RETRY_DELAY_MS;
+        open(generation);
+    }
+
+    /**
+     * Сеть снова появилась: не ждём окончания паузы между попытками, подключаемся сразу
+     */
+    public void reconnectNow() {
+        if (listener == null || connected) {
+            return;
+        }
+        generation++;
+        mainHandler.removeCallbacksAndMessages(null);
+        if (webSocket != null) {
+            webSocket.cancel();
+            webSocket = null;
+        }
+        retryDelayMs = INITIAL_RETRY_DELAY_MS;
+        open(generation);
+    }
+
+    public void disconnect() {
+        generation++;
+        mainHandler.removeCallbacksAndMessages(null);
+        if (webSocket != null) {
+            webSocket.close(NORMAL_CLOSURE, null);
+            webSocket = null;
+        }
+        connected = false;
+        listener = null;
+        homeId = -1;
+    }
+
+    private void open(int expectedGeneration) {
+        if (expectedGeneration != generation || listener == null) {
+            return;
+        }
+
+        Request request = new Request.Builder()
+                .url(ApiClient.getBaseUrl() + "api/devices/homes/" + homeId + "/stream")
+                .build();
+
+        webSocket = ApiClient.getHttpClient()
+                .newWebSocket(request, new StreamListener(expectedGeneration));
+    }
+
+    private void scheduleReconnect(int expectedGeneration) {
+        long delay = retryDelayMs;
+        retryDelayMs = Math.min(retryDelayMs * 2, MAX_RETRY_DELAY_MS);
+        mainHandler.postDelayed(() -> open(expectedGeneration), delay);
+    }
+
+    private class StreamListener extends WebSocketListener {
+
+        private final int socketGeneration;
+
+        StreamListener(int socketGeneration) {
+            this.socketGeneration = socketGeneration;
+        }
+
+        @Override
+        public void onOpen(@NonNull WebSocket socket, @NonNull Response response) {
+            mainHandler.post(() -> {
+                if (socketGeneration != generation || listener == null) {
+                    return;
+                }
+                boolean reconnect = hasConnected;
+                hasConnected = true;
+                connected = true;
+                retryDelayMs = INITIAL_RETRY_DELAY_MS;
+                listener.onStreamConnected(reconnect);
+            });
+        }
+
+        @Override
+        public void onMessage(@NonNull WebSocket socket, @NonNull String text) {
+            StreamEvent event;
+            try {
+                event = gson.fromJson(text, StreamEvent.class);
+            } catch (JsonSyntaxException e) {
+                Log.w(TAG, "Malformed stream event: " + text, e);
+                return;
+            }
+            if (event == null || !"device".equals(event.type) || event.device == null) {
+                return;
+            }
+
+            Device device = event.device;
+            mainHandler.post(() -> {
+                if (socketGeneration == generation && listener != null) {
+                    listener.onDeviceUpdate(device);
+                }
+            });
+        }
+
+        @Override
+        public void onClosing(@NonNull WebSocket socket, int code, @NonNull String reason) {
+            socket.close(NORMAL_CLOSURE, null);
+        }
+
+        @Override
+        public void onClosed(@NonNull WebSocket socket, int code, @NonNull String reason) {
+            handleDrop(null);
+        }
+
+        @Override
+        public void onFailure(@NonNull WebSocket socket, @NonNull Throwable t, @Nullable Response response) {
+            handleDrop(t);
+        }
+
+        private void handleDrop(@Nullable Throwable t) {
+            mainHandler.post(() -> {
+                if (socketGeneration != generation || listener == null) {
+                    return;
+                }
+                if (t != null) {
+                    Log.w(TAG, "Stream dropped for home " + homeId, t);
+                }
+                webSocket = null;
+                connected = false;
+                listener.onStreamDisconnected();
+                scheduleReconnect(socketGeneration);
+            });
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.project.smarthome.api;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.io.InterruptedIOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import retrofit2.Call;
+import retrofit2.CallAdapter;
+import retrofit2.Callback;
+import retrofit2.HttpException;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.http.DELETE;
+import retrofit2.http.GET;
+import retrofit2.http.PATCH;
+import retrofit2.http.POST;
+import retrofit2.http.PUT;
+
+/**
+ * Позволяет методам ApiService возвращать CompletableFuture вместо Call.
+ *
+ *  - CompletableFuture&lt;T&gt; — тело ответа; код не из 2xx завершает future с HttpException,
+ *    пустое тело (кроме Void) — с IllegalStateException;
+ *  - CompletableFuture&lt;Response&lt;T&gt;&gt; — ответ целиком с любым кодом (нужно, например, для 304).
+ *
+ * Каждому запросу назначается срок (CallDeadline или DEFAULT_DEADLINE_MS), отмена future
+ * отменяет сам Call, а задержка и исход записываются в ApiMetrics.
+ * Запросы с @Hedged дублируются, если ответ задерживается дольше p95 для эндпоинта.
+ */
+public class FutureCallAdapterFactory extends CallAdapter.Factory {
+
+    public static final long DEFAULT_DEADLINE_MS = 15_000;
+
+    private final ApiMetrics metrics;
+    // Только откладывает отправку копий @Hedged-запросов, сама работа идёт в потоках OkHttp
+    private final Handler hedgeHandler = new Handler(Looper.getMainLooper());
+
+    public FutureCallAdapterFactory(ApiMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public CallAdapter<?, ?> get(@NonNull Type returnType, @NonNull Annotation[] annotations,
+                                 @NonNull Retrofit retrofit) {
+        if (getRawType(returnType) != CompletableFuture.class) {
+            return null;
+        }
+        if (!(returnType instanceof ParameterizedType)) {
+            throw new IllegalStateException(
+                    "CompletableFuture должен быть параметризован: CompletableFuture<Foo>");
+        }
+
+        Type innerType = getParameterUpperBound(0, (ParameterizedType) returnType);
+        String endpoint = endpointOf(annotations);
+        long deadlineMs = deadlineOf(annotations);
+        boolean hedged = isHedged(annotations);
+
+        if (getRawType(innerType) == Response.class) {
+            if (!(innerType instanceof ParameterizedType)) {
+                throw new IllegalStateException(
+                        "Response должен быть параметризован: Response<Foo>");
+            }
+            Type bodyType = getParameterUpperBound(0, (ParameterizedType) innerType);
+            return new FutureAdapter<>(bodyType, endpoint, deadlineMs, true, hedged);
+        }
+        return new FutureAdapter<>(innerType, endpoint, deadlineMs, false, hedged);
+    }
+
+    // "GET api/devices/{device_id}" — шаблон пути, а не конкретный URL
+    static String endpointOf(Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof GET) return "GET " + ((GET) annotation).value();
+            if (annotation instanceof POST) return "POST " + ((POST) annotation).value();
+            if (annotation instanceof PUT) return "PUT " + ((PUT) annotation).value();
+            if (annotation instanceof PATCH) return "PATCH " + ((PATCH) annotation).value();
+            if (annotation instanceof DELETE) return "DELETE " + ((DELETE) annotation).value();
+        }
+        return "unknown";
+    }
+
+    private static boolean isHedged(Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof Hedged) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long deadlineOf(Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof CallDeadline) {
+                return ((CallDeadline) annotation).value();
+            }
+        }
+        return DEFAULT_DEADLINE_MS;
+    }
+
+    private final class FutureAdapter<R> implements CallAdapter<R, CompletableFuture<?>> {
+        private final Type responseType;
+        private final String endpoint;
+        private final long deadlineMs;
+        private final boolean wholeResponse;
+        private final boolean hedged;
+
+        FutureAdapter(Type responseType, String endpoint, long deadlineMs, boolean wholeResponse,
+                      boolean hedged) {
+            this.responseType = responseType;
+            this.endpoint = endpoint;
+            this.deadlineMs = deadlineMs;
+            this.wholeResponse = wholeResponse;
+            this.hedged = hedged;
+        }
+
+        @NonNull
+        @Override
+        public Type responseType() {
+            return responseType;
+        }
+
+        @NonNull
+        @Override
+        public CompletableFuture<?> adapt(@NonNull Call<R> call) {
+            CallFuture<Object> future = new CallFuture<>();
+            long startedAt = SystemClock.elapsedRealtime();
+            start(call, deadlineMs, future, startedAt);
+
+            long hedgeDelayMs = hedged ? metrics.hedgeDelayMs(endpoint) : -1;
+            if (hedgeDelayMs >= 0 && hedgeDelayMs < deadlineMs) {
+                // Копия уходит, только если первый запрос задержался дольше обычного
+                Runnable hedge = () -> {
+                    if (!future.isDone()) {
+                        long remainingMs = deadlineMs - (SystemClock.elapsedRealtime() - startedAt);
+                        start(call.clone(), remainingMs, future, startedAt);
+                    }
+                };
+                hedgeHandler.postDelayed(hedge, hedgeDelayMs);
+                future.whenComplete((result, error) -> hedgeHandler.removeCallbacks(hedge));
+            }
+
+            return future;
+        }
+
+        private void start(Call<R> call, long timeoutMs, CallFuture<Object> future, long startedAt) {
+            if (!future.addCall(call)) {
+                return;
+            }
+            call.timeout().timeout(timeoutMs, TimeUnit.MILLISECONDS);
+
+            call.enqueue(new Callback<R>() {
+                @Override
+                public void onResponse(@NonNull Call<R> call, @NonNull Response<R> response) {
+                    if (!future.claim(call)) {
+                        return;
+                    }
+                    metrics.record(endpoint, SystemClock.elapsedRealtime() - startedAt,
+                            outcomeOf(response));
+                    if (wholeResponse) {
+                        future.complete(response);
+                    } else if (!response.isSuccessful()) {
+                        future.completeExceptionally(new HttpException(response));
+                    } else if (response.body() == null && responseType != Void.class) {
+                        future.completeExceptionally(
+                                new IllegalStateException("Пустой ответ сервера: " + endpoint));
+                    } else {
+                        future.complete(response.body());
+                    }
+                }
+
+                @Override
+                public void onFailure(@NonNull Call<R> call, @NonNull Throwable t) {
+                    // Пока жива вторая копия, ошибка одной из них ещё не окончательная
+                    if (!future.failed()) {
+                        return;
+                    }
+                    metrics.record(endpoint, SystemClock.elapsedRealtime() - startedAt,
+                            outcomeOf(call, t));
+                    future.completeExceptionally(t);
+                }
+            });
+        }
+    }
+
+    private static String outcomeOf(Response<?> response) {
+        if (response.isSuccessful()) {
+            return ApiMetrics.OUTCOME_OK;
+        }
+        if (response.code() == ConditionalGetCache.HTTP_NOT_MODIFIED) {
+            return ApiMetrics.OUTCOME_NOT_MODIFIED;
+        }
+        return ApiMetrics.OUTCOME_HTTP_ERROR;
+    }
+
+    private static String outcomeOf(Call<?> call, Throwable t) {
+        if (call.isCanceled()) {
+            return ApiMetrics.OUTCOME_CANCELLED;
+        }
+        // OkHttp сообщает об истечении срока вызова через InterruptedIOException
+        if (t instanceof InterruptedIOException) {
+            return ApiMetrics.OUTCOME_TIMEOUT;
+        }
+        return ApiMetrics.OUTCOME_NETWORK_ERROR;
+    }
+
+    // Отмена future отменяет HTTP-запрос (и копию, если она была отправлена)
+    private static final class CallFuture<T> extends CompletableFuture<T> {
+        private final List<Call<?>> calls = new ArrayList<>();
+        private int running = 0;
+        private boolean claimed = false;
+
+        // false — результат уже есть, запрос не нужен
+        synchronized boolean addCall(Call<?> call) {
+            if (claimed || isDone()) {
+                return false;
+            }
+            calls.add(call);
+            running++;
+            return true;
+        }
+
+        /**
+         * Ответ пришёл по call. true — он первый и завершает future, остальные копии отменяются.
+         */
+        boolean claim(Call<?> call) {
+            List<Call<?>> losers;
+            synchronized (this) {
+                if (claimed) {
+                    return false;
+                }
+                claimed = true;
+                losers = new ArrayList<>(calls);
+            }
+            for (Call<?> other : losers) {
+                if (other != call) {
+                    other.cancel();
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Ошибка одной из копий. true — других живых копий нет, и ошибка завершает future.
+         */
+        synchronized boolean failed() {
+            running--;
+            if (claimed || running > 0) {
+                return false;
+            }
+            claimed = true;
+            return true;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            List<Call<?>> snapshot;
+            synchronized (this) {
+                snapshot = new ArrayList<>(calls);
+            }
+            for (Call<?> call : snapshot) {
+                call.cancel();
+            }
+            return super.cancel(mayInterruptIfRunning);
+        }
+    }
+}
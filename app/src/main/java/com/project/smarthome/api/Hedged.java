@@ -0,0 +1,19 @@
+package com.project.smarthome.api;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Идемпотентный запрос ApiService, который можно продублировать: если ответа нет дольше
+ * обычного (p95 задержки эндпоинта, см. ApiMetrics), FutureCallAdapterFactory отправляет
+ * вторую копию, используется первый пришедший ответ, а второй запрос отменяется.
+ * Только для чтения — команды и другие изменения так помечать нельзя.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Hedged {
+}
@@ -0,0 +1,252 @@
+package com.project.smarthome.api;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.project.smarthome.utils.AppExecutors;
+import com.project.smarthome.utils.ConnectivityMonitor;
+import com.project.smarthome.utils.SharedPrefManager;
+
+import org.eclipse.paho.client.mqttv3.MqttException;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Прямое управление через MQTT-брокер в домашней сети (Raspberry Pi),
+ * без облачного сервера и брокера EMQX.
+ *
+ * Выключено, пока в настройках (Настройки → Локальный брокер) не задан адрес брокера
+ * (SharedPrefManager.getLanBrokerUrl); на хабе должен быть включён lan.enabled в config.yaml.
+ * Подключение держится, только пока телефон в Wi-Fi/Ethernet. Команда считается выполненной,
+ * когда хаб переключит реле и сообщит прочитанное состояние (см. LanMqttSession); иначе она
+ * завершается LanUnavailableException, и репозиторий отправляет её через REST. То же состояние
+ * хаб публикует в облачный брокер, так что сервер узнаёт о командах, выполненных напрямую.
+ *
+ * Права доступа проверяет только сервер (POST /api/devices/{id}/action), поэтому напрямую
+ * управляются лишь устройства, команду для которых сервер уже принял от текущего пользователя
+ * (authorize); ответ 403/404 снимает разрешение (revoke), выход из аккаунта — все разрешения.
+ * Это защищает от обхода проверки в приложении, но не от другого MQTT-клиента в той же сети:
+ * для этого на брокере хаба должны быть включены аутентификация и ACL.
+ */
+public class LanMqttClient {
+
+    private static final String TAG = "LanMqttClient";
+
+    public static final String DEFAULT_BASE_TOPIC = "smart_home/production";
+    // Хаб переключает реле и публикует состояние; дольше ждать нет смысла — быстрее через сервер
+    public static final long CONFIRM_TIMEOUT_MS = 2_000;
+    // Не чаще одной попытки подключения за интервал, если брокер не отвечает
+    public static final long RECONNECT_INTERVAL_MS = 15_000;
+
+    public interface StateListener {
+        // Вызывается в главном потоке
+        void onDeviceState(int deviceId, String state);
+    }
+
+    private static volatile LanMqttClient instance;
+
+    private final SharedPrefManager sharedPrefManager;
+    private final ConnectivityMonitor connectivityMonitor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<StateListener> stateListeners = new CopyOnWriteArrayList<>();
+    private final String clientId = "android-" + UUID.randomUUID();
+    // Устройства, команды для которых сервер принял от текущего пользователя
+    private final Set<Integer> authorizedDevices = ConcurrentHashMap.newKeySet();
+
+    private final LanMqttSession.Scheduler scheduler = new LanMqttSession.Scheduler() {
+        @Override
+        public void postDelayed(Runnable task, long delayMs) {
+            mainHandler.postDelayed(task, delayMs);
+        }
+
+        @Override
+        public void cancel(Runnable task) {
+            mainHandler.removeCallbacks(task);
+        }
+    };
+
+    // Доступ только под this
+    private LanMqttSession session;
+    private boolean connecting = false;
+    private long lastAttemptAt = 0;
+
+    public static LanMqttClient getInstance(Context context) {
+        if (instance == null) {
+            synchronized (LanMqttClient.class) {
+                if (instance == null) {
+                    instance = new LanMqttClient(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private LanMqttClient(Context context) {
+        this.sharedPrefManager = SharedPrefManager.getInstance(context);
+        this.connectivityMonitor = ConnectivityMonitor.getInstance(context);
+        connectivityMonitor.addListener((online, metered) -> refreshConnection(true));
+        refreshConnection(true);
+    }
+
+    /**
+     * Выход из аккаунта: следующий пользователь снова проходит проверку сервера
+     */
+    public static void forgetAuthorizations() {
+        LanMqttClient current = instance;
+        if (current != null) {
+            current.authorizedDevices.clear();
+        }
+    }
+
+    public synchronized boolean isConnected() {
+        return session != null && session.isConnected();
+    }
+
+    /**
+     * Можно ли отправить команду устройству напрямую
+     */
+    public boolean canControl(int deviceId) {
+        return authorizedDevices.contains(deviceId) && isConnected();
+    }
+
+    // Сервер принял команду для устройства от текущего пользователя
+    public void authorize(int deviceId) {
+        authorizedDevices.add(deviceId);
+    }
+
+    // Сервер отказал в доступе или устройства больше нет
+    public void revoke(int deviceId) {
+        authorizedDevices.remove(deviceId);
+    }
+
+    public void addStateListener(StateListener listener) {
+        stateListeners.add(listener);
+    }
+
+    public void removeStateListener(StateListener listener) {
+        stateListeners.remove(listener);
+    }
+
+    /**
+     * Сменить брокер. brokerUrl == null выключает локальное управление.
+     */
+    public void configure(String brokerUrl, String baseTopic) {
+        sharedPrefManager.saveLanBrokerUrl(brokerUrl);
+        sharedPrefManager.saveMqttBaseTopic(baseTopic);
+        synchronized (this) {
+            closeClient();
+        }
+        refreshConnection(true);
+    }
+
+    /**
+     * Опубликовать команду устройству. Завершается, когда хаб сообщит новое состояние,
+     * или LanUnavailableException — без подключения, при ошибке и по CONFIRM_TIMEOUT_MS.
+     */
+    public CompletableFuture<Void> publishCommand(int deviceId, String state) {
+        LanMqttSession current;
+        synchronized (this) {
+            current = session;
+        }
+        if (current == null || !current.isConnected()) {
+            refreshConnection(false);
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            future.completeExceptionally(
+                    new LanMqttSession.LanUnavailableException("Нет связи с локальным брокером"));
+            return future;
+        }
+        return current.publishCommand(deviceId, state);
+    }
+
+    /**
+     * Подключиться или отключиться по текущей сети и настройкам.
+     * force — не ждать RECONNECT_INTERVAL_MS (сеть или настройки изменились).
+     */
+    private void refreshConnection(boolean force) {
+        String brokerUrl = sharedPrefManager.getLanBrokerUrl();
+        boolean wanted = brokerUrl != null && !brokerUrl.isEmpty() && connectivityMonitor.isLocalNetwork();
+
+        synchronized (this) {
+            if (!wanted) {
+                closeClient();
+                return;
+            }
+            if (session != null && (session.isConnected() || connecting)) {
+                return;
+            }
+            long now = SystemClock.elapsedRealtime();
+            if (!force && now - lastAttemptAt < RECONNECT_INTERVAL_MS) {
+                return;
+            }
+            lastAttemptAt = now;
+            connecting = true;
+        }
+
+        AppExecutors.io().execute(() -> connect(brokerUrl));
+    }
+
+    private void connect(String brokerUrl) {
+        String topic = sharedPrefManager.getMqttBaseTopic();
+        if (topic == null || topic.isEmpty()) {
+            topic = DEFAULT_BASE_TOPIC;
+        }
+
+        LanMqttSession newSession;
+        synchronized (this) {
+            closeClient();
+            try {
+                newSession = new LanMqttSession(brokerUrl, clientId, topic, scheduler,
+                        CONFIRM_TIMEOUT_MS, this::onDeviceState);
+            } catch (MqttException | IllegalArgumentException e) {
+                Log.w(TAG, "Invalid LAN broker URL: " + brokerUrl, e);
+                connecting = false;
+                return;
+            }
+            session = newSession;
+            connecting = true;
+        }
+
+        newSession.connect().whenComplete((ignored, error) -> {
+            synchronized (LanMqttClient.this) {
+                if (session != newSession) {
+                    return;
+                }
+                if (error == null) {
+                    connecting = false;
+                } else {
+                    Log.d(TAG, "LAN broker unreachable: " + brokerUrl + " (" + error + ")");
+                    // Автоматический переподключатель Paho работает только после
+                    // успешного подключения — следующую попытку начнёт refreshConnection
+                    closeClient();
+                }
+            }
+        });
+    }
+
+    private void onDeviceState(int deviceId, String state) {
+        mainHandler.post(() -> {
+            for (StateListener listener : stateListeners) {
+                listener.onDeviceState(deviceId, state);
+            }
+        });
+    }
+
+    // Вызывается под this
+    private void closeClient() {
+        connecting = false;
+        if (session == null) {
+            return;
+        }
+        LanMqttSession old = session;
+        session = null;
+        AppExecutors.io().execute(old::close);
+    }
+}
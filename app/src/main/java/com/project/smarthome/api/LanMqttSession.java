@@ -0,0 +1,304 @@
+package com.project.smarthome.api;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Одно подключение к локальному брокеру — часть LanMqttClient без зависимостей от Android,
+ * её можно проверить на встроенном брокере в JVM-тесте.
+ *
+ * Команда публикуется в {base}/device/{id}/cmd с QoS 1. Подтверждение брокера (PUBACK) значит
+ * только, что брокер принял сообщение, поэтому команда считается выполненной, когда хаб
+ * опубликует в {base}/device/{id}/state то же состояние. Не дождались за confirmTimeoutMs,
+ * нет подключения или публикация не удалась — команда завершается LanUnavailableException.
+ */
+public class LanMqttSession {
+
+    public static final int QOS = 1;
+    public static final int CONNECT_TIMEOUT_SEC = 2;
+    public static final int KEEP_ALIVE_SEC = 30;
+
+    private static final String DEVICE_LEVEL = "/device/";
+    private static final String STATE_LEVEL = "/state";
+
+    public interface StateListener {
+        // Вызывается в потоке Paho
+        void onDeviceState(int deviceId, String state);
+    }
+
+    /**
+     * Отложенные задачи (таймауты подтверждения)
+     */
+    public interface Scheduler {
+        void postDelayed(Runnable task, long delayMs);
+
+        void cancel(Runnable task);
+    }
+
+    /**
+     * Хаб не подтвердил команду — её нужно отправить через сервер.
+     * Не IOException: это не отсутствие сети, и команда не должна попасть в журнал
+     * OfflineCommandQueue, если ошибка всё же дойдёт до HomeViewModel.
+     */
+    public static class LanUnavailableException extends Exception {
+        LanUnavailableException(String message) {
+            super(message);
+        }
+
+        LanUnavailableException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    // Команда, ждущая состояния от хаба
+    private static final class PendingCommand {
+        final String state;
+        final CompletableFuture<Void> future;
+
+        PendingCommand(String state, CompletableFuture<Void> future) {
+            this.state = state;
+            this.future = future;
+        }
+    }
+
+    private final MqttAsyncClient client;
+    private final String baseTopic;
+    private final Scheduler scheduler;
+    private final long confirmTimeoutMs;
+    private final StateListener stateListener;
+
+    // deviceId → команды без подтверждения; доступ только под this
+    private final Map<Integer, List<PendingCommand>> pending = new HashMap<>();
+    private final CompletableFuture<Void> connected = new CompletableFuture<>();
+    private volatile boolean subscribed = false;
+
+    public LanMqttSession(String brokerUrl, String clientId, String baseTopic,
+                          Scheduler scheduler, long confirmTimeoutMs,
+                          StateListener stateListener) throws MqttException {
+        this.client = new MqttAsyncClient(brokerUrl, clientId, new MemoryPersistence());
+        this.baseTopic = baseTopic;
+        this.scheduler = scheduler;
+        this.confirmTimeoutMs = confirmTimeoutMs;
+        this.stateListener = stateListener;
+        client.setCallback(new BrokerCallback());
+    }
+
+    /**
+     * Подключиться и подписаться на состояния. Future завершается, когда подписка
+     * оформлена: до этого подтверждение хаба можно пропустить.
+     */
+    public CompletableFuture<Void> connect() {
+        MqttConnectOptions options = new MqttConnectOptions();
+        options.setCleanSession(true);
+        options.setAutomaticReconnect(true);
+        options.setConnectionTimeout(CONNECT_TIMEOUT_SEC);
+        options.setKeepAliveInterval(KEEP_ALIVE_SEC);
+
+        try {
+            client.connect(options, null, new IMqttActionListener() {
+                @Override
+                public void onSuccess(IMqttToken token) {
+                    // Подписку оформляет connectComplete
+                }
+
+                @Override
+                public void onFailure(IMqttToken token, Throwable error) {
+                    connected.completeExceptionally(
+                            new LanUnavailableException("Локальный брокер недоступен", error));
+                }
+            });
+        } catch (MqttException e) {
+            connected.completeExceptionally(new LanUnavailableException("Локальный брокер недоступен", e));
+        }
+        return connected;
+    }
+
+    public boolean isConnected() {
+        return subscribed && client.isConnected();
+    }
+
+    /**
+     * Опубликовать команду и дождаться от хаба того же state для этого устройства
+     */
+    public CompletableFuture<Void> publishCommand(int deviceId, String state) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (!isConnected()) {
+            future.completeExceptionally(new LanUnavailableException("Нет связи с локальным брокером"));
+            return future;
+        }
+
+        PendingCommand command = new PendingCommand(state, future);
+        synchronized (this) {
+            List<PendingCommand> commands = pending.get(deviceId);
+            if (commands == null) {
+                commands = new ArrayList<>();
+                pending.put(deviceId, commands);
+            }
+            commands.add(command);
+        }
+
+        Runnable timeout = () -> future.completeExceptionally(
+                new LanUnavailableException("Хаб не подтвердил команду"));
+        scheduler.postDelayed(timeout, confirmTimeoutMs);
+        future.whenComplete((ignored, error) -> {
+            scheduler.cancel(timeout);
+            removePending(deviceId, command);
+        });
+
+        try {
+            client.publish(commandTopic(baseTopic, deviceId), state.getBytes(StandardCharsets.UTF_8),
+                    QOS, false, null, new IMqttActionListener() {
+                        @Override
+                        public void onSuccess(IMqttToken token) {
+                            // Брокер принял команду; ждём состояния от хаба
+                        }
+
+                        @Override
+                        public void onFailure(IMqttToken token, Throwable error) {
+                            future.completeExceptionally(
+                                    new LanUnavailableException("Ошибка публикации команды", error));
+                        }
+                    });
+        } catch (MqttException e) {
+            future.completeExceptionally(new LanUnavailableException("Ошибка публикации команды", e));
+        }
+        return future;
+    }
+
+    /**
+     * Отключиться; неподтверждённые команды завершаются LanUnavailableException.
+     * Блокирует до DISCONNECT — вызывать не из главного потока.
+     */
+    public void close() {
+        subscribed = false;
+        List<PendingCommand> abandoned = new ArrayList<>();
+        synchronized (this) {
+            for (List<PendingCommand> commands : pending.values()) {
+                abandoned.addAll(commands);
+            }
+            pending.clear();
+        }
+        for (PendingCommand command : abandoned) {
+            command.future.completeExceptionally(new LanUnavailableException("Подключение закрыто"));
+        }
+        connected.completeExceptionally(new LanUnavailableException("Подключение закрыто"));
+
+        try {
+            if (client.isConnected()) {
+                client.disconnectForcibly(0, 500);
+            }
+            client.close();
+        } catch (MqttException e) {
+            // Клиент больше не используется
+        }
+    }
+
+    static String commandTopic(String baseTopic, int deviceId) {
+        return baseTopic + DEVICE_LEVEL + deviceId + "/cmd";
+    }
+
+    /**
+     * id устройства из топика {base}/device/{id}/state или null, если это другой топик
+     */
+    static Integer parseStateTopic(String baseTopic, String topic) {
+        String prefix = baseTopic + DEVICE_LEVEL;
+        if (!topic.startsWith(prefix) || !topic.endsWith(STATE_LEVEL)
+                || topic.length() <= prefix.length() + STATE_LEVEL.length()) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(topic.substring(prefix.length(), topic.length() - STATE_LEVEL.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private synchronized void removePending(int deviceId, PendingCommand command) {
+        List<PendingCommand> commands = pending.get(deviceId);
+        if (commands != null) {
+            commands.remove(command);
+            if (commands.isEmpty()) {
+                pending.remove(deviceId);
+            }
+        }
+    }
+
+    private void onState(int deviceId, String state) {
+        List<PendingCommand> confirmed = new ArrayList<>();
+        synchronized (this) {
+            List<PendingCommand> commands = pending.get(deviceId);
+            if (commands != null) {
+                for (PendingCommand command : commands) {
+                    if (command.state.equals(state)) {
+                        confirmed.add(command);
+                    }
+                }
+            }
+        }
+        // Сначала состояние, потом успех команды: к ответу новое состояние уже применено
+        stateListener.onDeviceState(deviceId, state);
+        for (PendingCommand command : confirmed) {
+            command.future.complete(null);
+        }
+    }
+
+    private class BrokerCallback implements MqttCallbackExtended {
+
+        @Override
+        public void connectComplete(boolean reconnect, String serverURI) {
+            // Сессия чистая: подписку восстанавливаем после каждого подключения
+            try {
+                client.subscribe(baseTopic + DEVICE_LEVEL + "+" + STATE_LEVEL, QOS, null,
+                        new IMqttActionListener() {
+                            @Override
+                            public void onSuccess(IMqttToken token) {
+                                subscribed = true;
+                                connected.complete(null);
+                            }
+
+                            @Override
+                            public void onFailure(IMqttToken token, Throwable error) {
+                                connected.completeExceptionally(
+                                        new LanUnavailableException("Подписка на состояния не оформлена", error));
+                            }
+                        });
+            } catch (MqttException e) {
+                connected.completeExceptionally(
+                        new LanUnavailableException("Подписка на состояния не оформлена", e));
+            }
+        }
+
+        @Override
+        public void connectionLost(Throwable cause) {
+            subscribed = false;
+        }
+
+        @Override
+        public void messageArrived(String topic, MqttMessage message) {
+            Integer deviceId = parseStateTopic(baseTopic, topic);
+            if (deviceId == null) {
+                return;
+            }
+            onState(deviceId, new String(message.getPayload(), StandardCharsets.UTF_8).trim());
+        }
+
+        @Override
+        public void deliveryComplete(IMqttDeliveryToken token) {
+            // Доставка брокеру команду не подтверждает — см. onState
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.project.smarthome.api;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import retrofit2.Invocation;
+
+/**
+ * Короткая строка о каждом запросе вместо полного лога тел (HttpLoggingInterceptor BODY):
+ * метод, шаблон маршрута, код ответа, размер и время.
+ *
+ * Тела не буферизуются: размер берётся из Content-Length, а в лог попадает не больше
+ * MAX_SAMPLE_BYTES ответа — только для выбранных запросов (доля bodySampleRate или
+ * sampleNextBodies()). В release-сборке пишутся только ошибки и медленные запросы.
+ */
+public class NetworkDiagnosticsInterceptor implements Interceptor {
+
+    private static final String TAG = "Network";
+
+    public static final double DEFAULT_DEBUG_SAMPLE_RATE = 0.2;
+    public static final long MAX_SAMPLE_BYTES = 4 * 1024;
+    public static final long SLOW_REQUEST_MS = 2000;
+
+    private final boolean debug;
+    private volatile double bodySampleRate;
+    private final AtomicInteger forcedSamples = new AtomicInteger();
+
+    // Шаблон маршрута по методу ApiService — аннотации читаются один раз
+    private final Map<Method, String> endpoints = new ConcurrentHashMap<>();
+
+    public NetworkDiagnosticsInterceptor(boolean debug) {
+        this.debug = debug;
+        this.bodySampleRate = debug ? DEFAULT_DEBUG_SAMPLE_RATE : 0;
+    }
+
+    /**
+     * Доля запросов (0..1), для которых в лог попадает начало тела ответа
+     */
+    public void setBodySampleRate(double rate) {
+        bodySampleRate = Math.max(0, Math.min(1, rate));
+    }
+
+    /**
+     * Записать тела следующих count ответов — по запросу, в том числе в release
+     */
+    public void sampleNextBodies(int count) {
+        forcedSamples.set(Math.max(0, count));
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String endpoint = endpointOf(request);
+        long startedAt = SystemClock.elapsedRealtime();
+
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            Log.w(TAG, endpoint + " failed after "
+                    + (SystemClock.elapsedRealtime() - startedAt) + " ms: " + e);
+            throw e;
+        }
+
+        long tookMs = SystemClock.elapsedRealtime() - startedAt;
+        boolean problem = !response.isSuccessful() && response.code() != 304 || tookMs >= SLOW_REQUEST_MS;
+        boolean sampled = shouldSampleBody();
+        if (!debug && !problem && !sampled) {
+            return response;
+        }
+
+        String summary = endpoint
+                + " → " + response.code()
+                + ", " + sizeOf(response.body())
+                + ", " + tookMs + " ms";
+        if (sampled) {
+            // peekBody копирует не больше лимита и не потребляет тело
+            summary += "\n" + response.peekBody(MAX_SAMPLE_BYTES).string();
+        }
+
+        if (problem) {
+            Log.w(TAG, summary);
+        } else {
+            Log.d(TAG, summary);
+        }
+        return response;
+    }
+
+    private boolean shouldSampleBody() {
+        if (forcedSamples.getAndUpdate(n -> n > 0 ? n - 1 : 0) > 0) {
+            return true;
+        }
+        double rate = bodySampleRate;
+        return rate > 0 && ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    private static String sizeOf(ResponseBody body) {
+        long length = body != null ? body.contentLength() : 0;
+        return length >= 0 ? length + " B" : "? B";
+    }
+
+    // "GET api/devices/homes/{home_id}" для вызовов Retrofit, иначе метод и путь запроса
+    private String endpointOf(Request request) {
+        Invocation invocation = request.tag(Invocation.class);
+        if (invocation == null) {
+            return request.method() + " " + request.url().encodedPath();
+        }
+        return endpoints.computeIfAbsent(invocation.method(),
+                method -> FutureCallAdapterFactory.endpointOf(method.getAnnotations()));
+    }
+}
@@ -0,0 +1,18 @@
+package com.project.smarthome.api;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Запрос ApiService без токена (вход, регистрация): заголовок Authorization не добавляется.
+ * 401 на такой запрос означает неверные данные, а не истёкшую сессию, поэтому
+ * TokenAuthenticator его не обрабатывает и сохранённый токен не сбрасывает.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface NoAuth {
+}
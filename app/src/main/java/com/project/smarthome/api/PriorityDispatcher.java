@@ -0,0 +1,155 @@
+package com.project.smarthome.api;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import retrofit2.Invocation;
+
+/**
+ * Очередь запросов по приоритету (см. RequestPriority) поверх общего Dispatcher OkHttp.
+ *
+ *  - INTERACTIVE идут сразу и в лимиты не входят — команда не ждёт за фоновыми чтениями;
+ *  - FOREGROUND и BACKGROUND вместе занимают не больше MAX_CONCURRENT запросов;
+ *  - BACKGROUND — не больше MAX_BACKGROUND, только когда нет ожидающих FOREGROUND
+ *    и выполняющихся INTERACTIVE. Пока фон приостановлен (pauseBackground — например, на лимитной
+ *    сети), такие запросы сразу завершаются BackgroundPausedException, а не ждут до таймаута.
+ *
+ * Ожидание идёт в потоке OkHttp до отправки запроса и входит в срок вызова;
+ * отменённый во время ожидания вызов завершается сразу.
+ */
+public class PriorityDispatcher implements Interceptor {
+
+    public static final int MAX_CONCURRENT = 6;
+    public static final int MAX_BACKGROUND = 2;
+
+    /**
+     * Фоновый запрос не отправлялся: фон приостановлен
+     */
+    public static class BackgroundPausedException extends IOException {
+        BackgroundPausedException() {
+            super("Фоновые запросы приостановлены");
+        }
+    }
+
+    // Как часто ожидающий запрос проверяет, не отменён ли вызов
+    private static final long CANCEL_CHECK_MS = 100;
+
+    private final Map<Method, RequestPriority.Level> levels = new ConcurrentHashMap<>();
+
+    private int interactiveRunning = 0;
+    private int foregroundRunning = 0;
+    private int backgroundRunning = 0;
+    private int foregroundWaiting = 0;
+    private boolean backgroundPaused = false;
+
+    public synchronized void pauseBackground() {
+        backgroundPaused = true;
+    }
+
+    public synchronized void resumeBackground() {
+        backgroundPaused = false;
+        notifyAll();
+    }
+
+    public synchronized boolean isBackgroundPaused() {
+        return backgroundPaused;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        RequestPriority.Level level = levelOf(chain.request());
+        acquire(chain, level);
+        try {
+            return chain.proceed(chain.request());
+        } finally {
+            release(level);
+        }
+    }
+
+    private synchronized void acquire(Chain chain, RequestPriority.Level level) throws IOException {
+        if (level == RequestPriority.Level.INTERACTIVE) {
+            interactiveRunning++;
+            return;
+        }
+
+        boolean foreground = level == RequestPriority.Level.FOREGROUND;
+        if (foreground) {
+            foregroundWaiting++;
+        }
+        try {
+            while (!canStart(level)) {
+                if (!foreground && backgroundPaused) {
+                    throw new BackgroundPausedException();
+                }
+                if (chain.call().isCanceled()) {
+                    throw new IOException("Canceled");
+                }
+                wait(CANCEL_CHECK_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Ожидание очереди прервано");
+        } finally {
+            if (foreground) {
+                foregroundWaiting--;
+            }
+        }
+
+        if (foreground) {
+            foregroundRunning++;
+        } else {
+            backgroundRunning++;
+        }
+    }
+
+    private boolean canStart(RequestPriority.Level level) {
+        if (foregroundRunning + backgroundRunning >= MAX_CONCURRENT) {
+            return false;
+        }
+        if (level == RequestPriority.Level.FOREGROUND) {
+            return true;
+        }
+        return !backgroundPaused
+                && backgroundRunning < MAX_BACKGROUND
+                && foregroundWaiting == 0
+                && interactiveRunning == 0;
+    }
+
+    private synchronized void release(RequestPriority.Level level) {
+        switch (level) {
+            case INTERACTIVE:
+                interactiveRunning--;
+                break;
+            case FOREGROUND:
+                foregroundRunning--;
+                break;
+            default:
+                backgroundRunning--;
+                break;
+        }
+        notifyAll();
+    }
+
+    private RequestPriority.Level levelOf(Request request) {
+        Invocation invocation = request.tag(Invocation.class);
+        if (invocation == null) {
+            return defaultLevel(request.method());
+        }
+        return levels.computeIfAbsent(invocation.method(), method -> {
+            RequestPriority annotation = method.getAnnotation(RequestPriority.class);
+            return annotation != null ? annotation.value() : defaultLevel(request.method());
+        });
+    }
+
+    private static RequestPriority.Level defaultLevel(String httpMethod) {
+        return "GET".equals(httpMethod) || "HEAD".equals(httpMethod)
+                ? RequestPriority.Level.FOREGROUND
+                : RequestPriority.Level.INTERACTIVE;
+    }
+}
@@ -0,0 +1,31 @@
+package com.project.smarthome.api;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Класс приоритета запроса ApiService для PriorityDispatcher.
+ * Без аннотации изменяющие запросы (POST, PUT, PATCH, DELETE) считаются INTERACTIVE,
+ * а чтение — FOREGROUND.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RequestPriority {
+
+    Level value();
+
+    enum Level {
+        // Действие пользователя (команда устройству и т.п.) — не ждёт никогда
+        INTERACTIVE,
+        // Данные открытого экрана
+        FOREGROUND,
+        // Синхронизация и служебные запросы — только когда сеть свободна. На лимитной сети
+        // и без сети такие запросы сразу завершаются BackgroundPausedException, поэтому
+        // так помечаются только запросы, которые можно пропустить или которые повторят позже
+        BACKGROUND
+    }
+}
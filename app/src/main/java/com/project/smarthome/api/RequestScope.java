@@ -0,0 +1,82 @@
+package com.project.smarthome.api;
+
+import androidx.annotation.NonNull;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Набор запросов, живущих не дольше своего владельца (ViewModel или фрагмента).
+ * cancelAll() вызывается в onCleared / onDestroyView: незавершённые запросы отменяются,
+ * а их колбэки уже не вызываются. Запросы, добавленные после отмены, отменяются сразу.
+ *
+ * Команды управления и другие изменения на сервере сюда обычно не добавляют:
+ * уход с экрана не должен отменять действие пользователя.
+ */
+public class RequestScope {
+
+    private final Set<CompletableFuture<?>> futures = ConcurrentHashMap.newKeySet();
+    private final Set<Call<?>> calls = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled = false;
+
+    /**
+     * Отслеживать future (например, из ApiService или репозитория)
+     */
+    public <T> CompletableFuture<T> track(CompletableFuture<T> future) {
+        futures.add(future);
+        future.whenComplete((result, error) -> futures.remove(future));
+        if (cancelled) {
+            future.cancel(true);
+        }
+        return future;
+    }
+
+    /**
+     * Отправить Call в рамках области. Колбэк не вызывается, если область уже отменена.
+     */
+    public <T> void enqueue(Call<T> call, Callback<T> callback) {
+        if (cancelled) {
+            call.cancel();
+            return;
+        }
+        calls.add(call);
+        call.enqueue(new Callback<T>() {
+            @Override
+            public void onResponse(@NonNull Call<T> call, @NonNull Response<T> response) {
+                calls.remove(call);
+                if (!cancelled) {
+                    callback.onResponse(call, response);
+                }
+            }
+
+            @Override
+            public void onFailure(@NonNull Call<T> call, @NonNull Throwable t) {
+                calls.remove(call);
+                if (!cancelled) {
+                    callback.onFailure(call, t);
+                }
+            }
+        });
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void cancelAll() {
+        cancelled = true;
+        for (CompletableFuture<?> future : futures) {
+            future.cancel(true);
+        }
+        futures.clear();
+        for (Call<?> call : calls) {
+            call.cancel();
+        }
+        calls.clear();
+    }
+}
@@ -0,0 +1,163 @@
+package com.project.smarthome.api;
+
+import android.os.SystemClock;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Устойчивость к недоступному серверу (например, к «холодному» старту на хостинге).
+ *
+ *  - Идемпотентные запросы (GET, HEAD) повторяются при сетевой ошибке и ответах 502/503/504,
+ *    до MAX_ATTEMPTS попыток, с экспоненциальной задержкой и случайным разбросом (full jitter),
+ *    чтобы клиенты не повторяли запросы синхронно.
+ *  - Для каждого хоста работает предохранитель (circuit breaker): после FAILURE_THRESHOLD
+ *    неудач подряд запросы на OPEN_DURATION_MS сразу завершаются CircuitOpenException,
+ *    затем сервер проверяется одним пробным запросом, а остальные ждут его результата.
+ *
+ * Отменённые вызовы не повторяются и не считаются неудачами.
+ */
+public class ResilienceInterceptor implements Interceptor {
+
+    public static final int MAX_ATTEMPTS = 3;
+    public static final long BASE_BACKOFF_MS = 300;
+    public static final long MAX_BACKOFF_MS = 4_000;
+
+    public static final int FAILURE_THRESHOLD = 5;
+    public static final long OPEN_DURATION_MS = 30_000;
+
+    /**
+     * Сервер считается недоступным — запрос не отправлялся
+     */
+    public static class CircuitOpenException extends IOException {
+        CircuitOpenException(String host, long retryInMs) {
+            super("Сервер " + host + " недоступен, повтор через " + retryInMs + " мс");
+        }
+    }
+
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String host = request.url().host();
+        CircuitBreaker breaker = breakers.computeIfAbsent(host, key -> new CircuitBreaker());
+        boolean retryable = isIdempotent(request);
+
+        for (int attempt = 1; ; attempt++) {
+            boolean probe = breaker.acquire(host);
+
+            Response response;
+            try {
+                response = chain.proceed(request);
+            } catch (IOException e) {
+                if (chain.call().isCanceled()) {
+                    breaker.onCancelled(probe);
+                    throw e;
+                }
+                breaker.onFailure(probe);
+                if (!retryable || attempt >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+                backoff(chain, attempt);
+                continue;
+            }
+
+            if (!isServerUnavailable(response.code())) {
+                // Любой осмысленный ответ, в том числе 4xx, значит, что сервер жив
+                breaker.onSuccess(probe);
+                return response;
+            }
+
+            breaker.onFailure(probe);
+            if (!retryable || attempt >= MAX_ATTEMPTS) {
+                return response;
+            }
+            response.close();
+            backoff(chain, attempt);
+        }
+    }
+
+    private static boolean isIdempotent(Request request) {
+        return "GET".equals(request.method()) || "HEAD".equals(request.method());
+    }
+
+    private static boolean isServerUnavailable(int code) {
+        return code == 502 || code == 503 || code == 504;
+    }
+
+    // Full jitter: случайная задержка от 0 до BASE_BACKOFF_MS * 2^(attempt-1), не больше MAX_BACKOFF_MS
+    private static void backoff(Chain chain, int attempt) throws IOException {
+        long ceiling = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << (attempt - 1));
+        long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Повтор запроса прерван");
+        }
+        if (chain.call().isCanceled()) {
+            throw new IOException("Canceled");
+        }
+    }
+
+    private static final class CircuitBreaker {
+        private static final long CLOSED = -1;
+
+        private int consecutiveFailures = 0;
+        private long openedAt = CLOSED;
+        private boolean probeInFlight = false;
+
+        /**
+         * Разрешение на запрос. true — это пробный запрос после паузы.
+         */
+        synchronized boolean acquire(String host) throws CircuitOpenException {
+            if (openedAt == CLOSED) {
+                return false;
+            }
+            long elapsed = SystemClock.elapsedRealtime() - openedAt;
+            if (elapsed < OPEN_DURATION_MS) {
+                throw new CircuitOpenException(host, OPEN_DURATION_MS - elapsed);
+            }
+            if (probeInFlight) {
+                throw new CircuitOpenException(host, 0);
+            }
+            probeInFlight = true;
+            return true;
+        }
+
+        synchronized void onSuccess(boolean probe) {
+            consecutiveFailures = 0;
+            openedAt = CLOSED;
+            if (probe) {
+                probeInFlight = false;
+            }
+        }
+
+        synchronized void onFailure(boolean probe) {
+            if (probe) {
+                // Проба не прошла — снова ждём полный интервал
+                probeInFlight = false;
+                openedAt = SystemClock.elapsedRealtime();
+                return;
+            }
+            consecutiveFailures++;
+            if (openedAt == CLOSED && consecutiveFailures >= FAILURE_THRESHOLD) {
+                openedAt = SystemClock.elapsedRealtime();
+            }
+        }
+
+        synchronized void onCancelled(boolean probe) {
+            if (probe) {
+                probeInFlight = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.project.smarthome.api;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+
+import com.project.smarthome.utils.SharedPrefManager;
+
+import java.io.IOException;
+
+import okhttp3.Authenticator;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.Route;
+
+/**
+ * Обработка 401 Unauthorized для всех запросов сразу.
+ *
+ * Одновременные 401 выстраиваются в очередь: обновлением токена занимается только первый,
+ * остальные после него видят уже новый токен и повторяются с ним без нового обращения к серверу.
+ * Если обновить токен нечем (или не удалось), сессия сбрасывается один раз,
+ * и SessionListener получает одно событие, а не по ошибке на каждый запрос.
+ */
+public class TokenAuthenticator implements Authenticator {
+
+    /**
+     * Получение нового токена (повторный вход или refresh). Вызывается в потоке OkHttp
+     * и может блокировать его; null — обновить не удалось.
+     */
+    public interface TokenRefresher {
+        @Nullable
+        String refreshToken() throws IOException;
+    }
+
+    public interface SessionListener {
+        // Вызывается в главном потоке
+        void onSessionExpired();
+    }
+
+    private final SharedPrefManager sharedPrefManager;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Object lock = new Object();
+
+    private volatile TokenRefresher refresher;
+    private volatile SessionListener sessionListener;
+
+    public TokenAuthenticator(SharedPrefManager sharedPrefManager) {
+        this.sharedPrefManager = sharedPrefManager;
+    }
+
+    public void setTokenRefresher(@Nullable TokenRefresher refresher) {
+        this.refresher = refresher;
+    }
+
+    public void setSessionListener(@Nullable SessionListener sessionListener) {
+        this.sessionListener = sessionListener;
+    }
+
+    @Nullable
+    @Override
+    public Request authenticate(@Nullable Route route, Response response) throws IOException {
+        // Повтор с новым токеном тоже получил 401 — дальше не пробуем
+        if (response.priorResponse() != null) {
+            return null;
+        }
+        // Запрос без токена (вход с неверным паролем и т.п.) — сессия тут ни при чём
+        String sentHeader = response.request().header("Authorization");
+        if (sentHeader == null) {
+            return null;
+        }
+
+        synchronized (lock) {
+            String current = sharedPrefManager.getAuthHeader();
+            if (current != null && !current.equals(sentHeader)) {
+                // Токен уже обновлён, пока запрос был в пути или ждал своей очереди
+                return withAuthorization(response.request(), current);
+            }
+
+            TokenRefresher tokenRefresher = refresher;
+            String fresh = tokenRefresher != null ? tokenRefresher.refreshToken() : null;
+            if (fresh != null && !fresh.isEmpty()) {
+                sharedPrefManager.saveToken(fresh);
+                return withAuthorization(response.request(), sharedPrefManager.getAuthHeader());
+            }
+
+            if (current != null) {
+                sharedPrefManager.clearToken();
+                notifySessionExpired();
+            }
+            return null;
+        }
+    }
+
+    private static Request withAuthorization(Request request, String authHeader) {
+        return request.newBuilder().header("Authorization", authHeader).build();
+    }
+
+    private void notifySessionExpired() {
+        SessionListener listener = sessionListener;
+        if (listener != null) {
+            mainHandler.post(listener::onSessionExpired);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.project.smarthome.database;
+
+import android.content.Context;
+
+import androidx.room.Database;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+
+import com.project.smarthome.utils.AppExecutors;
+
+import java.util.concurrent.Future;
+
+/**
+ * Локальная БД со снимком домов, комнат и устройств.
+ * Используется как кэш: экран сначала рисуется из неё, затем данные обновляются с сервера.
+ * Здесь же журнал команд, которые не удалось отправить без сети (pending_commands).
+ * Room запрещает запросы в главном потоке — чтение и запись идут через AppExecutors.database().
+ */
+@Database(
+        entities = {
+                DeviceEntity.class,
+                RoomEntity.class,
+                HomeEntity.class,
+                DeviceSyncEntity.class,
+                PendingCommandEntity.class
+        },
+        version = 3,
+        exportSchema = false
+)
+public abstract class AppDatabase extends RoomDatabase {
+
+    private static final String DATABASE_NAME = "smarthome_cache.db";
+
+    private static volatile AppDatabase instance;
+
+    public abstract DeviceDao deviceDao();
+
+    public abstract RoomDao roomDao();
+
+    public abstract HomeDao homeDao();
+
+    public abstract PendingCommandDao pendingCommandDao();
+
+    public static AppDatabase getInstance(Context context) {
+        if (instance == null) {
+            synchronized (AppDatabase.class) {
+                if (instance == null) {
+                    instance = Room.databaseBuilder(
+                                    context.getApplicationContext(),
+                                    AppDatabase.class,
+                                    DATABASE_NAME
+                            )
+                            .fallbackToDestructiveMigration()
+                            .build();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Выход из аккаунта. Запросы к кэшу не фильтруются по пользователю (HomeDao.getAll),
+     * поэтому снимок прежнего пользователя, его отметки синхронизации и журнал команд удаляются
+     * целиком — иначе следующий аккаунт сначала увидит чужие дома, а команды уйдут с его токеном.
+     */
+    public static Future<?> clearOnLogout(Context context) {
+        AppDatabase database = getInstance(context);
+        return AppExecutors.database().submit(database::clearAllTables);
+    }
+}
@@ -0,0 +1,61 @@
+package com.project.smarthome.database;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import java.util.List;
+
+@Dao
+public abstract class DeviceDao {
+
+    @Query("SELECT * FROM devices WHERE home_id = :homeId ORDER BY id")
+    public abstract List<DeviceEntity> getForHome(int homeId);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract void insertAll(List<DeviceEntity> devices);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract void insert(DeviceEntity device);
+
+    @Query("DELETE FROM devices WHERE home_id = :homeId")
+    public abstract void deleteForHome(int homeId);
+
+    @Query("DELETE FROM devices WHERE id IN (:ids)")
+    public abstract void deleteByIds(List<Integer> ids);
+
+    @Query("SELECT watermark FROM device_sync WHERE home_id = :homeId")
+    public abstract String getWatermark(int homeId);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract void saveSyncState(DeviceSyncEntity syncState);
+
+    /**
+     * Полностью заменяет снимок устройств дома одним транзакционным шагом
+     */
+    @Transaction
+    public void replaceForHome(int homeId, List<DeviceEntity> devices, String watermark) {
+        deleteForHome(homeId);
+        insertAll(devices);
+        saveSyncState(new DeviceSyncEntity(homeId, watermark));
+    }
+
+    /**
+     * Применяет delta-ответ сервера: изменённые устройства и отметки об удалении
+     */
+    @Transaction
+    public void applyDelta(
+            int homeId,
+            List<DeviceEntity> changed,
+            List<Integer> deletedIds,
+            String watermark
+    ) {
+        insertAll(changed);
+        if (!deletedIds.isEmpty()) {
+            deleteByIds(deletedIds);
+        }
+        saveSyncState(new DeviceSyncEntity(homeId, watermark));
+    }
+}
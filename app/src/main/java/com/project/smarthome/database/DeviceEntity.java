@@ -0,0 +1,55 @@
+package com.project.smarthome.database;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import com.project.smarthome.models.devices.Device;
+
+@Entity(tableName = "devices", indices = {@Index("home_id")})
+public class DeviceEntity {
+
+    @PrimaryKey
+    public int id;
+
+    public String name;
+
+    public String type;
+
+    @ColumnInfo(name = "room_id")
+    public Integer roomId;
+
+    @ColumnInfo(name = "home_id")
+    public int homeId;
+
+    public String state;
+
+    @ColumnInfo(name = "last_update")
+    public String lastUpdate;
+
+    public static DeviceEntity fromDevice(@NonNull Device device) {
+        DeviceEntity entity = new DeviceEntity();
+        entity.id = device.getId();
+        entity.name = device.getName();
+        entity.type = device.getType();
+        entity.roomId = device.getRoomId();
+        entity.homeId = device.getHomeId();
+        entity.state = device.getState();
+        entity.lastUpdate = device.getLastUpdate();
+        return entity;
+    }
+
+    public Device toDevice() {
+        Device device = new Device();
+        device.setId(id);
+        device.setName(name);
+        device.setType(type);
+        device.setRoomId(roomId);
+        device.setHomeId(homeId);
+        device.setState(state);
+        device.setLastUpdate(lastUpdate);
+        return device;
+    }
+}
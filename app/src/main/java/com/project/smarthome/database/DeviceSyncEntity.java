@@ -0,0 +1,24 @@
+package com.project.smarthome.database;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * Отметка delta-синхронизации устройств дома: наибольший last_update из ответов сервера.
+ * Хранится отдельно от снимка, чтобы события потока не сдвигали её вперёд.
+ */
+@Entity(tableName = "device_sync")
+public class DeviceSyncEntity {
+
+    @PrimaryKey
+    @ColumnInfo(name = "home_id")
+    public int homeId;
+
+    public String watermark;
+
+    public DeviceSyncEntity(int homeId, String watermark) {
+        this.homeId = homeId;
+        this.watermark = watermark;
+    }
+}
@@ -0,0 +1,28 @@
+package com.project.smarthome.database;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import java.util.List;
+
+@Dao
+public abstract class HomeDao {
+
+    @Query("SELECT * FROM homes ORDER BY id")
+    public abstract List<HomeEntity> getAll();
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract void insertAll(List<HomeEntity> homes);
+
+    @Query("DELETE FROM homes")
+    public abstract void deleteAll();
+
+    @Transaction
+    public void replaceAll(List<HomeEntity> homes) {
+        deleteAll();
+        insertAll(homes);
+    }
+}
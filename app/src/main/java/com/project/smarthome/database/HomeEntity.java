@@ -0,0 +1,39 @@
+package com.project.smarthome.database;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+import com.project.smarthome.models.homes.Home;
+
+/**
+ * Снимок дома без списка участников — участники всегда запрашиваются с сервера.
+ */
+@Entity(tableName = "homes")
+public class HomeEntity {
+
+    @PrimaryKey
+    public int id;
+
+    public String name;
+
+    @ColumnInfo(name = "owner_id")
+    public int ownerId;
+
+    @ColumnInfo(name = "created_at")
+    public String createdAt;
+
+    public static HomeEntity fromHome(@NonNull Home home) {
+        HomeEntity entity = new HomeEntity();
+        entity.id = home.getId();
+        entity.name = home.getName();
+        entity.ownerId = home.getOwnerId();
+        entity.createdAt = home.getCreatedAt();
+        return entity;
+    }
+
+    public Home toHome() {
+        return new Home(id, name, ownerId, createdAt, null);
+    }
+}
@@ -0,0 +1,26 @@
+package com.project.smarthome.database;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public abstract class PendingCommandDao {
+
+    // Новая команда для устройства заменяет предыдущую
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract void upsert(PendingCommandEntity command);
+
+    @Query("SELECT * FROM pending_commands ORDER BY enqueued_at, device_id")
+    public abstract List<PendingCommandEntity> getAll();
+
+    // Удаляет запись, только если её не успела заменить более новая команда
+    @Query("DELETE FROM pending_commands WHERE device_id = :deviceId AND enqueued_at = :enqueuedAt")
+    public abstract void delete(int deviceId, long enqueuedAt);
+
+    @Query("DELETE FROM pending_commands WHERE device_id = :deviceId")
+    public abstract void deleteForDevice(int deviceId);
+}
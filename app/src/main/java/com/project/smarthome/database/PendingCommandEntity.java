@@ -0,0 +1,29 @@
+package com.project.smarthome.database;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * Команда управления, не отправленная из-за отсутствия сети.
+ * На устройство хранится одна запись — последнее намерение пользователя.
+ */
+@Entity(tableName = "pending_commands")
+public class PendingCommandEntity {
+
+    @PrimaryKey
+    @ColumnInfo(name = "device_id")
+    public int deviceId;
+
+    public String state;
+
+    // Время постановки в очередь (System.currentTimeMillis): порядок повтора и срок жизни
+    @ColumnInfo(name = "enqueued_at")
+    public long enqueuedAt;
+
+    public PendingCommandEntity(int deviceId, String state, long enqueuedAt) {
+        this.deviceId = deviceId;
+        this.state = state;
+        this.enqueuedAt = enqueuedAt;
+    }
+}
@@ -0,0 +1,28 @@
+package com.project.smarthome.database;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import java.util.List;
+
+@Dao
+public abstract class RoomDao {
+
+    @Query("SELECT * FROM rooms WHERE home_id = :homeId ORDER BY id")
+    public abstract List<RoomEntity> getForHome(int homeId);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract void insertAll(List<RoomEntity> rooms);
+
+    @Query("DELETE FROM rooms WHERE home_id = :homeId")
+    public abstract void deleteForHome(int homeId);
+
+    @Transaction
+    public void replaceForHome(int homeId, List<RoomEntity> rooms) {
+        deleteForHome(homeId);
+        insertAll(rooms);
+    }
+}
@@ -0,0 +1,33 @@
+package com.project.smarthome.database;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import com.project.smarthome.models.homes.room.Room;
+
+@Entity(tableName = "rooms", indices = {@Index("home_id")})
+public class RoomEntity {
+
+    @PrimaryKey
+    public int id;
+
+    public String name;
+
+    @ColumnInfo(name = "home_id")
+    public int homeId;
+
+    public static RoomEntity fromRoom(@NonNull Room room) {
+        RoomEntity entity = new RoomEntity();
+        entity.id = room.getId();
+        entity.name = room.getName();
+        entity.homeId = room.getHomeId();
+        return entity;
+    }
+
+    public Room toRoom() {
+        return new Room(id, name, homeId);
+    }
+}
@@ -2,6 +2,7 @@ package com.project.smarthome.fragment;
 
 import android.os.Bundle;
 import android.view.*;
+import android.widget.EditText;
 import android.widget.ProgressBar;
 import android.widget.Toast;
 import androidx.annotation.NonNull;
@@ -18,7 +19,9 @@ import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.snackbar.Snackbar;
 import com.project.smarthome.R;
 import com.project.smarthome.adapters.DeviceAdapter;
+import com.project.smarthome.api.LanMqttClient;
 import com.project.smarthome.models.devices.Device;
+import com.project.smarthome.utils.SharedPrefManager;
 import com.project.smarthome.viewmodels.HomeViewModel;
 import java.util.ArrayList;
 
@@ -216,8 +219,26 @@ public class DashboardFragment extends Fragment implements DeviceAdapter.OnDevic
         return super.onOptionsItemSelected(item);
     }
 
+    // Настройки: адрес локального брокера хаба для прямого управления в домашней сети
     private void navigateToSettings() {
-        Toast.makeText(requireContext(), "Настройки будут реализованы позже", Toast.LENGTH_SHORT).show();
+        SharedPrefManager prefs = SharedPrefManager.getInstance(requireContext());
+        EditText brokerInput = new EditText(requireContext());
+        brokerInput.setSingleLine(true);
+        brokerInput.setHint("tcp://192.168.1.20:1883");
+        brokerInput.setText(prefs.getLanBrokerUrl());
+
+        new MaterialAlertDialogBuilder(requireContext())
+                .setTitle("Локальный брокер")
+                .setMessage("MQTT-брокер хаба в домашней сети (lan.enabled в config.yaml хаба). "
+                        + "Пусто — управление только через сервер")
+                .setView(brokerInput)
+                .setPositiveButton("Сохранить", (dialog, which) -> {
+                    String brokerUrl = brokerInput.getText().toString().trim();
+                    LanMqttClient.getInstance(requireContext()).configure(
+                            brokerUrl.isEmpty() ? null : brokerUrl, prefs.getMqttBaseTopic());
+                })
+                .setNegativeButton("Отмена", null)
+                .show();
     }
 
     // Реализация интерфейса DeviceAdapter.OnDeviceClickListener
@@ -249,11 +270,11 @@ public class DashboardFragment extends Fragment implements DeviceAdapter.OnDevic
                 })
                 .setNegativeButton("Отмена", (dialog, which) -> {
                     // Отменяем переключение в UI
-                    deviceAdapter.setDevices(homeViewModel.getDevices().getValue());
+                    deviceAdapter.resetDevice(device.getId());
                 })
                 .setOnCancelListener(dialog -> {
                     // Отменяем переключение в UI при отмене диалога
-                    deviceAdapter.setDevices(homeViewModel.getDevices().getValue());
+                    deviceAdapter.resetDevice(device.getId());
                 })
                 .show();
     }
@@ -261,12 +282,8 @@ public class DashboardFragment extends Fragment implements DeviceAdapter.OnDevic
     @Override
     public void onResume() {
         super.onResume();
-        // Обновляем данные при возвращении на фрагмент
-        if (homeViewModel.getCurrentHomeId() != -1) {
-            homeViewModel.refreshData();
-        } else {
-            homeViewModel.loadData();
-        }
+        // Обновляем данные при возвращении на фрагмент (если поток состояний не держит их актуальными)
+        homeViewModel.onScreenResumed();
     }
 
     @Override
@@ -0,0 +1,13 @@
+package com.project.smarthome.models.devices;
+
+import java.util.List;
+
+public class BulkDeviceActionRequest {
+    private List<DeviceCommand> commands;
+
+    public BulkDeviceActionRequest(List<DeviceCommand> commands) {
+        this.commands = commands;
+    }
+
+    public List<DeviceCommand> getCommands() { return commands; }
+}
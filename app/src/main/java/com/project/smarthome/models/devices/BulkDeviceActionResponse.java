@@ -0,0 +1,37 @@
+package com.project.smarthome.models.devices;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.util.List;
+
+public class BulkDeviceActionResponse {
+
+    public static final String RESULT_OK = "ok";
+
+    private String status;
+    private int succeeded;
+    private int failed;
+    private List<Result> results;
+
+    public String getStatus() { return status; }
+    public int getSucceeded() { return succeeded; }
+    public int getFailed() { return failed; }
+    public List<Result> getResults() { return results; }
+
+    // Результат команды для одного устройства
+    public static class Result {
+        @SerializedName("device_id")
+        private int deviceId;
+
+        private String status;   // ok / not_found / forbidden
+        private String state;
+        private String message;
+
+        public int getDeviceId() { return deviceId; }
+        public String getStatus() { return status; }
+        public String getState() { return state; }
+        public String getMessage() { return message; }
+
+        public boolean isOk() { return RESULT_OK.equals(status); }
+    }
+}
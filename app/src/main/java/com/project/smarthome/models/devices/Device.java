@@ -16,6 +16,29 @@ public class Device {
 
     public Device() {}
 
+    /**
+     * Копия устройства. Опубликованные в LiveData устройства не меняются —
+     * изменение состояния создаёт новый объект (см. withState).
+     */
+    public Device(Device other) {
+        this.id = other.id;
+        this.name = other.name;
+        this.type = other.type;
+        this.room_id = other.room_id;
+        this.home_id = other.home_id;
+        this.state = other.state;
+        this.last_update = other.last_update;
+        this.pending = other.pending;
+        this.deleted = other.deleted;
+    }
+
+    public Device withState(String state, boolean pending) {
+        Device copy = new Device(this);
+        copy.state = state;
+        copy.pending = pending;
+        return copy;
+    }
+
     public int getId() { return id; }
     public void setId(int id) { this.id = id; }
 
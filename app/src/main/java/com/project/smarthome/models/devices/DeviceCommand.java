@@ -0,0 +1,20 @@
+package com.project.smarthome.models.devices;
+
+import com.google.gson.annotations.SerializedName;
+
+public class DeviceCommand {
+
+    @SerializedName("device_id")
+    private int deviceId;
+
+    @SerializedName("state")
+    private String state;
+
+    public DeviceCommand(int deviceId, String state) {
+        this.deviceId = deviceId;
+        this.state = state;
+    }
+
+    public int getDeviceId() { return deviceId; }
+    public String getState() { return state; }
+}
@@ -3,8 +3,9 @@ package com.project.smarthome.models.families;
 import com.project.smarthome.api.*;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
-import retrofit2.*;
+import retrofit2.Response;
 
 
 public class FamilyRepository {
@@ -12,73 +13,26 @@ public class FamilyRepository {
     private ApiService api = ApiClient.getApiService();
 
     public CompletableFuture<FamilyResponse> createFamily(String token, String name, int homeId) {
-        CompletableFuture<FamilyResponse> f = new CompletableFuture<>();
-
         FamilyCreateRequest req = new FamilyCreateRequest(name, homeId);
-
-        api.createFamily(token, req).enqueue(new Callback<FamilyResponse>() {
-            @Override
-            public void onResponse(Call<FamilyResponse> call, Response<FamilyResponse> resp) {
-                if (resp.isSuccessful()) {
-                    f.complete(resp.body());
-                } else {
-                    f.completeExceptionally(new Exception("Failed to create family, code = " + resp.code()));
-                }
-            }
-
-            @Override
-            public void onFailure(Call<FamilyResponse> call, Throwable t) {
-                f.completeExceptionally(t);
-            }
-        });
-
-        return f;
+        return body(api.createFamily(token, req), "Failed to create family, code = ");
     }
 
     public CompletableFuture<FamilyResponse> getFamily(String token, int familyId) {
-        CompletableFuture<FamilyResponse> f = new CompletableFuture<>();
-
-        api.getFamily(token, familyId).enqueue(new Callback<FamilyResponse>() {
-            @Override
-            public void onResponse(Call<FamilyResponse> call, Response<FamilyResponse> resp) {
-                if (resp.isSuccessful()) {
-                    f.complete(resp.body());
-                } else {
-                    f.completeExceptionally(new Exception("Family load failed, code = " + resp.code()));
-                }
-            }
-
-            @Override
-            public void onFailure(Call<FamilyResponse> call, Throwable t) {
-                f.completeExceptionally(t);
-            }
-        });
-
-        return f;
+        return body(api.getFamily(token, familyId), "Family load failed, code = ");
     }
 
     public CompletableFuture<FamilyResponse> updateFamily(String token, int familyId, String newName) {
-        CompletableFuture<FamilyResponse> f = new CompletableFuture<>();
-
         FamilyUpdateRequest req = new FamilyUpdateRequest(newName);
+        return body(api.updateFamily(token, familyId, req), "Update failed, code = ");
+    }
 
-        api.updateFamily(token, familyId, req).enqueue(new Callback<FamilyResponse>() {
-            @Override
-            public void onResponse(Call<FamilyResponse> call, Response<FamilyResponse> resp) {
-                if (resp.isSuccessful()) {
-                    f.complete(resp.body());
-                } else {
-                    f.completeExceptionally(new Exception("Update failed, code: " + resp.code()));
-                }
-            }
-
-            @Override
-            public void onFailure(Call<FamilyResponse> call, Throwable t) {
-                f.completeExceptionally(t);
+    // Тело успешного ответа (null, если оно пустое), иначе Exception("... code = N")
+    private static <T> CompletableFuture<T> body(CompletableFuture<Response<T>> call, String message) {
+        return ApiFutures.propagateCancel(call.thenApply(resp -> {
+            if (resp.isSuccessful()) {
+                return resp.body();
             }
-        });
-
-        return f;
+            throw new CompletionException(new Exception(message + resp.code()));
+        }), call);
     }
 }
-
@@ -4,6 +4,8 @@ import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
 
+import com.project.smarthome.api.ApiFutures;
+import com.project.smarthome.api.RequestScope;
 import com.project.smarthome.utils.SharedPrefManager;
 
 import java.util.List;
@@ -15,6 +17,9 @@ public class FamilySetupViewModel extends ViewModel {
     private final MutableLiveData<List<FamilyMember>> members = new MutableLiveData<>();
     private final MutableLiveData<String> error = new MutableLiveData<>();
 
+    // Загрузки экрана; отменяются в onCleared. Изменения (приглашения) не отменяются
+    private final RequestScope requestScope = new RequestScope();
+
     public LiveData<List<FamilyMember>> getMembers() {
         return members;
     }
@@ -26,14 +31,16 @@ public class FamilySetupViewModel extends ViewModel {
     public void loadMembers(int familyId) {
         String token = SharedPrefManager.getInstance().getToken();
 
-        repository.getFamily(token, familyId)
+        requestScope.track(repository.getFamily(token, familyId))
                 .thenAccept(response -> {
                     if (response != null && response.getMembers() != null) {
                         members.postValue(response.getMembers());
                     }
                 })
                 .exceptionally(t -> {
-                    error.postValue(t.getMessage());
+                    if (!ApiFutures.isCancellation(t)) {
+                        error.postValue(t.getMessage());
+                    }
                     return null;
                 });
     }
@@ -56,4 +63,10 @@ public class FamilySetupViewModel extends ViewModel {
                     return null;
                 });
     }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        requestScope.cancelAll();
+    }
 }
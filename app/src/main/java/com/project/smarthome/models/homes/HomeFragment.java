@@ -23,7 +23,9 @@ import com.project.smarthome.R;
 import com.project.smarthome.adapters.DeviceAdapter;
 import com.project.smarthome.databinding.FragmentHomeBinding;
 import com.project.smarthome.models.devices.Device;
+import com.project.smarthome.models.devices.DeviceCommand;
 import com.project.smarthome.models.homes.room.Room;
+import com.project.smarthome.utils.DeviceFilterEngine;
 import com.project.smarthome.viewmodels.HomeViewModel;
 import java.util.ArrayList;
 import java.util.List;
@@ -33,6 +35,7 @@ public class HomeFragment extends Fragment implements DeviceAdapter.OnDeviceClic
     private FragmentHomeBinding binding;
     private HomeViewModel homeViewModel;
     private DeviceAdapter deviceAdapter;
+    private DeviceFilterEngine filterEngine;
     private NavController navController;
 
     private List<Device> allDevices = new ArrayList<>();
@@ -85,6 +88,13 @@ public class HomeFragment extends Fragment implements DeviceAdapter.OnDeviceClic
     }
 
     private void setupRecyclerView() {
+        // Фильтрация идёт в фоне, в главный поток приходит готовый список
+        filterEngine = new DeviceFilterEngine((devices, query, roomId) -> {
+            if (binding == null) return;
+            filteredDevices = devices;
+            deviceAdapter.setDevices(devices);
+            updateEmptyState();
+        });
         deviceAdapter = new DeviceAdapter(filteredDevices, this);
         binding.devicesRecyclerView.setAdapter(deviceAdapter);
         switchViewMode(true);
@@ -102,7 +112,7 @@ public class HomeFragment extends Fragment implements DeviceAdapter.OnDeviceClic
                 @Override
                 public void onTextChanged(CharSequence s, int start, int before, int count) {
                     currentSearchQuery = s.toString().trim();
-                    filterDevices();
+                    filterEngine.search(currentSearchQuery, roomFilterId());
                 }
 
                 @Override
@@ -116,7 +126,7 @@ public class HomeFragment extends Fragment implements DeviceAdapter.OnDeviceClic
                     binding.searchView.getEditText().setText("");
                 }
                 currentSearchQuery = "";
-                filterDevices();
+                filterEngine.filterNow(currentSearchQuery, roomFilterId());
             }
         });
     }
@@ -150,7 +160,7 @@ public class HomeFragment extends Fragment implements DeviceAdapter.OnDeviceClic
             if (devices != null) {
                 allDevices.addAll(devices);
             }
-            filterDevices();
+            filterEngine.setDevices(allDevices, currentSearchQuery, roomFilterId());
             hideLoading();
         });
 
@@ -178,6 +188,12 @@ public class HomeFragment extends Fragment implements DeviceAdapter.OnDeviceClic
             }
         });
 
+        homeViewModel.getActionMessage().observe(getViewLifecycleOwner(), message -> {
+            if (message != null && !message.isEmpty()) {
+                showSnackbar(message);
+            }
+        });
+
         homeViewModel.getConnectionStatus().observe(getViewLifecycleOwner(), isConnected -> {
             if (isConnected != null) {
                 updateConnectionStatus(isConnected);
@@ -254,7 +270,7 @@ public class HomeFragment extends Fragment implements DeviceAdapter.OnDeviceClic
 
         button.setOnClickListener(v -> {
             currentRoomFilter = roomId;
-            filterDevices();
+            filterEngine.filterNow(currentSearchQuery, roomFilterId());
             updateRoomButtonsSelection();
         });
 
@@ -300,20 +316,9 @@ public class HomeFragment extends Fragment implements DeviceAdapter.OnDeviceClic
         return "all";
     }
 
-    private void filterDevices() {
-        filteredDevices.clear();
-        for (Device device : allDevices) {
-            boolean matchesRoom = currentRoomFilter.equals("all") ||
-                    (device.getRoomId() != null &&
-                            String.valueOf(device.getRoomId()).equals(currentRoomFilter));
-            boolean matchesSearch = currentSearchQuery.isEmpty() ||
-                    device.getName().toLowerCase().contains(currentSearchQuery.toLowerCase());
-            if (matchesRoom && matchesSearch) {
-                filteredDevices.add(device);
-            }
-        }
-        deviceAdapter.setDevices(filteredDevices);
-        updateEmptyState();
+    private int roomFilterId() {
+        return currentRoomFilter.equals("all") ? DeviceFilterEngine.ROOM_ALL
+                : Integer.parseInt(currentRoomFilter);
     }
 
     private void updateEmptyState() {
@@ -357,19 +362,18 @@ public class HomeFragment extends Fragment implements DeviceAdapter.OnDeviceClic
             showSnackbar("Нет устройств для управления");
             return;
         }
-        String action = turnOn ? "включены" : "выключены";
-        int count = 0;
+        List<DeviceCommand> commands = new ArrayList<>();
         for (Device device : allDevices) {
             if (device.getType().equals("lamp") || device.getType().equals("siren")) {
-                homeViewModel.controlDevice(device.getId(), turnOn ? "ON" : "OFF");
-                count++;
+                commands.add(new DeviceCommand(device.getId(), turnOn ? "ON" : "OFF"));
             }
         }
-        if (count > 0) {
-            showSnackbar(count + " устройств " + action);
-        } else {
+        if (commands.isEmpty()) {
             showSnackbar("Нет управляемых устройств");
+            return;
         }
+        // Все команды уходят одним запросом, итог придёт в getActionMessage()
+        homeViewModel.controlDevices(commands);
     }
 
     private void enableSecurityMode() {
@@ -381,14 +385,17 @@ public class HomeFragment extends Fragment implements DeviceAdapter.OnDeviceClic
                 .setTitle("Режим охраны")
                 .setMessage("Активировать режим охраны? Будут включены все датчики движения и сирены.")
                 .setPositiveButton("Активировать", (dialog, which) -> {
-                    int count = 0;
+                    List<DeviceCommand> commands = new ArrayList<>();
                     for (Device device : allDevices) {
                         if (device.getType().equals("siren") || device.getType().equals("motion_sensor")) {
-                            homeViewModel.controlDevice(device.getId(), "ON");
-                            count++;
+                            commands.add(new DeviceCommand(device.getId(), "ON"));
                         }
                     }
-                    showSnackbar("Режим охраны активирован: " + count + " устройств");
+                    if (commands.isEmpty()) {
+                        showSnackbar("Нет устройств для режима охраны");
+                        return;
+                    }
+                    homeViewModel.controlDevices(commands);
                 })
                 .setNegativeButton("Отмена", null)
                 .show();
@@ -450,12 +457,13 @@ public class HomeFragment extends Fragment implements DeviceAdapter.OnDeviceClic
     @Override
     public void onResume() {
         super.onResume();
-        loadInitialData();
+        homeViewModel.onScreenResumed();
     }
 
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        filterEngine.shutdown();
         binding = null;
     }
 
@@ -477,7 +485,7 @@ public class HomeFragment extends Fragment implements DeviceAdapter.OnDeviceClic
                         homeViewModel.controlDevice(device.getId(), newState);
                     })
                     .setNegativeButton("Отмена", (dialog, which) -> {
-                        filterDevices(); // Обновляем UI
+                        deviceAdapter.resetDevice(device.getId()); // Обновляем UI
                     })
                     .show();
         } else {
@@ -2,17 +2,16 @@ package com.project.smarthome.models.homes;
 
 import android.util.Log;
 
+import com.project.smarthome.api.ApiFutures;
 import com.project.smarthome.api.ApiService;
 import com.project.smarthome.models.homes.HomeCreateRequest;
 import com.project.smarthome.models.homes.HomeResponse;
+import com.project.smarthome.utils.AppExecutors;
 import com.project.smarthome.utils.SharedPrefManager;
 
+import java.io.IOException;
 import java.util.List;
 
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
-
 public class HomeRepository {
 
     private static final String TAG = "HomeRepository";
@@ -31,7 +30,8 @@ public class HomeRepository {
     }
 
     /**
-     * Получение списка домов текущего пользователя
+     * Получение списка домов текущего пользователя.
+     * Колбэк вызывается в главном потоке.
      */
     public void getHomes(RepositoryCallback<List<HomeResponse>> callback) {
 
@@ -41,36 +41,18 @@ public class HomeRepository {
             return;
         }
 
-        apiService.getMyHomes("Bearer " + token)
-                .enqueue(new Callback<List<HomeResponse>>() {
-
-                    @Override
-                    public void onResponse(
-                            Call<List<HomeResponse>> call,
-                            Response<List<HomeResponse>> response
-                    ) {
-                        if (response.isSuccessful() && response.body() != null) {
-                            callback.onSuccess(response.body());
-                        } else {
-                            callback.onError(
-                                    "Ошибка получения домов: " + response.code()
-                            );
-                        }
-                    }
-
-                    @Override
-                    public void onFailure(
-                            Call<List<HomeResponse>> call,
-                            Throwable t
-                    ) {
-                        Log.e(TAG, "getHomes failed", t);
-                        callback.onError("Ошибка сети: " + t.getMessage());
+        ApiFutures.withErrorMessage(apiService.getMyHomes(sharedPrefManager.getAuthHeader()), "Ошибка получения домов")
+                .whenCompleteAsync((homes, error) -> {
+                    if (error == null) {
+                        callback.onSuccess(homes);
+                    } else {
+                        callback.onError(errorMessage(error));
                     }
-                });
+                }, AppExecutors.main());
     }
 
     /**
-     * Создание нового дома
+     * Создание нового дома. Колбэк вызывается в главном потоке.
      */
     public void createHome(String homeName,
                            RepositoryCallback<HomeResponse> callback) {
@@ -89,32 +71,24 @@ public class HomeRepository {
         HomeCreateRequest request =
                 new HomeCreateRequest(homeName.trim());
 
-        apiService.createHome("Bearer " + token, request)
-                .enqueue(new Callback<HomeResponse>() {
-
-                    @Override
-                    public void onResponse(
-                            Call<HomeResponse> call,
-                            Response<HomeResponse> response
-                    ) {
-                        if (response.isSuccessful() && response.body() != null) {
-                            callback.onSuccess(response.body());
-                        } else {
-                            callback.onError(
-                                    "Ошибка создания дома: " + response.code()
-                            );
-                        }
+        ApiFutures.withErrorMessage(apiService.createHome(sharedPrefManager.getAuthHeader(), request), "Ошибка создания дома")
+                .whenCompleteAsync((home, error) -> {
+                    if (error == null) {
+                        callback.onSuccess(home);
+                    } else {
+                        callback.onError(errorMessage(error));
                     }
+                }, AppExecutors.main());
+    }
 
-                    @Override
-                    public void onFailure(
-                            Call<HomeResponse> call,
-                            Throwable t
-                    ) {
-                        Log.e(TAG, "createHome failed", t);
-                        callback.onError("Ошибка сети: " + t.getMessage());
-                    }
-                });
+    // Ответ сервера с кодом ошибки — как есть, сбой сети — с пометкой
+    private static String errorMessage(Throwable error) {
+        Throwable cause = ApiFutures.unwrap(error);
+        if (cause instanceof IOException) {
+            Log.e(TAG, "Request failed", cause);
+            return "Ошибка сети: " + cause.getMessage();
+        }
+        return cause.getMessage();
     }
 
     /**
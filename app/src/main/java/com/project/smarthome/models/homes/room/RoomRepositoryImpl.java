@@ -4,16 +4,14 @@ import android.content.Context;
 
 import androidx.annotation.NonNull;
 
+import com.project.smarthome.api.ApiFutures;
 import com.project.smarthome.api.ApiService;
+import com.project.smarthome.utils.AppExecutors;
 import com.project.smarthome.utils.SharedPrefManager;
 
 import java.util.ArrayList;
 import java.util.List;
 
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
-
 public class RoomRepositoryImpl implements RoomRepository {
 
     private final ApiService apiService;
@@ -33,6 +31,8 @@ public class RoomRepositoryImpl implements RoomRepository {
 
     /* ===== Загрузка комнат ===== */
 
+    // Колбэки вызываются в главном потоке: вызывающие обновляют по ним экран
+
     @Override
     public void loadRooms(
             int homeId,
@@ -47,39 +47,22 @@ public class RoomRepositoryImpl implements RoomRepository {
             return;
         }
 
-        apiService.getRooms("Bearer " + token, homeId)
-                .enqueue(new Callback<List<RoomResponse>>() {
-
-                    @Override
-                    public void onResponse(
-                            @NonNull Call<List<RoomResponse>> call,
-                            @NonNull Response<List<RoomResponse>> response
-                    ) {
-                        if (!response.isSuccessful() || response.body() == null) {
-                            callback.onError(
-                                    new RuntimeException(
-                                            "Ошибка загрузки комнат: " + response.code()
-                                    )
-                            );
-                            return;
-                        }
-
-                        List<Room> rooms = new ArrayList<>();
-                        for (RoomResponse roomResponse : response.body()) {
-                            rooms.add(Room.fromResponse(roomResponse));
-                        }
-
-                        callback.onSuccess(rooms);
+        ApiFutures.withErrorMessage(apiService.getRooms(sharedPrefManager.getAuthHeader(), homeId), "Ошибка загрузки комнат")
+                .thenApply(responses -> {
+                    List<Room> rooms = new ArrayList<>();
+                    for (RoomResponse roomResponse : responses) {
+                        rooms.add(Room.fromResponse(roomResponse));
                     }
-
-                    @Override
-                    public void onFailure(
-                            @NonNull Call<List<RoomResponse>> call,
-                            @NonNull Throwable t
-                    ) {
-                        callback.onError(t);
+                    return rooms;
+                })
+                .whenCompleteAsync((rooms, error) -> {
+                    if (error != null) {
+                        callback.onError(ApiFutures.unwrap(error));
+                        return;
                     }
-                });
+
+                    callback.onSuccess(rooms);
+                }, AppExecutors.main());
     }
 
     /* ===== Создание комнаты ===== */
@@ -101,38 +84,18 @@ public class RoomRepositoryImpl implements RoomRepository {
 
         RoomCreateRequest request = new RoomCreateRequest(name);
 
-        apiService.createRoom(
-                "Bearer " + token,
-                homeId,
-                request
-        ).enqueue(new Callback<RoomResponse>() {
-
-            @Override
-            public void onResponse(
-                    @NonNull Call<RoomResponse> call,
-                    @NonNull Response<RoomResponse> response
-            ) {
-                if (!response.isSuccessful() || response.body() == null) {
-                    callback.onError(
-                            new RuntimeException(
-                                    "Ошибка создания комнаты: " + response.code()
-                            )
-                    );
-                    return;
-                }
-
-                callback.onSuccess(
-                        Room.fromResponse(response.body())
-                );
+        ApiFutures.withErrorMessage(
+                apiService.createRoom(sharedPrefManager.getAuthHeader(), homeId, request),
+                "Ошибка создания комнаты"
+        ).whenCompleteAsync((response, error) -> {
+            if (error != null) {
+                callback.onError(ApiFutures.unwrap(error));
+                return;
             }
 
-            @Override
-            public void onFailure(
-                    @NonNull Call<RoomResponse> call,
-                    @NonNull Throwable t
-            ) {
-                callback.onError(t);
-            }
-        });
+            callback.onSuccess(
+                    Room.fromResponse(response)
+            );
+        }, AppExecutors.main());
     }
 }
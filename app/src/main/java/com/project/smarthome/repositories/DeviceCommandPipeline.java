@@ -0,0 +1,266 @@
+package com.project.smarthome.repositories;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Очередь команд управления с принципом «побеждает последняя».
+ *
+ * Для каждого устройства:
+ *  - команды копятся в окне SETTLE_WINDOW_MS, на сервер уходит только последняя;
+ *  - одновременно в полёте не больше одного запроса, поэтому сервер получает команды по порядку;
+ *  - подтверждение применяется, только если его номер больше уже подтверждённого;
+ *  - если ответа нет дольше COMMAND_TIMEOUT_MS, команда считается неудачной один раз:
+ *    повторно она не отправляется, а пришедший позже ответ не сообщается — UI уже откатил
+ *    состояние, фактическое придёт потоком событий дома.
+ *
+ * Все методы и колбэки Listener вызываются в главном потоке.
+ */
+public class DeviceCommandPipeline {
+
+    public static final long SETTLE_WINDOW_MS = 300;
+    // Страховка на случай зависшего future: заметно дольше @CallDeadline(10_000) у
+    // ApiService.controlDevice, чтобы обычно срабатывал дедлайн запроса, а не этот таймер
+    public static final long COMMAND_TIMEOUT_MS = 15_000;
+
+    public interface Listener {
+        void onCommandAcknowledged(int deviceId, String state);
+
+        void onCommandFailed(int deviceId, String state, Throwable error);
+    }
+
+    /**
+     * Отправка одной команды; в приложении — DeviceRepository.controlDevice
+     */
+    interface CommandSender {
+        CompletableFuture<Map<String, Object>> send(int deviceId, String state);
+    }
+
+    /**
+     * Отложенный запуск в главном потоке; в тестах подменяется ручным временем
+     */
+    interface Scheduler {
+        void postDelayed(Runnable task, long delayMs);
+
+        void cancel(Runnable task);
+
+        void cancelAll();
+    }
+
+    // Состояние очереди одного устройства
+    private static class DeviceChannel {
+        String intendedState;
+        long intendedSeq;
+        Runnable pendingSend;
+        boolean inFlight;
+        CompletableFuture<?> inFlightCall;
+        long inFlightSeq;
+        long timedOutSeq;
+        // Последняя команда, о неудаче которой уже сообщили; повторно не отправляется
+        long failedSeq;
+        long lastAckedSeq;
+        String lastAckedState;
+    }
+
+    private final CommandSender sender;
+    private final Listener listener;
+    private final Scheduler scheduler;
+    private final Map<Integer, DeviceChannel> channels = new HashMap<>();
+
+    private long nextSeq = 0;
+    private boolean closed = false;
+
+    public DeviceCommandPipeline(@NonNull DeviceRepository repository, @NonNull Listener listener) {
+        this(repository::controlDevice, listener, mainThreadScheduler());
+    }
+
+    DeviceCommandPipeline(@NonNull CommandSender sender, @NonNull Listener listener,
+                          @NonNull Scheduler scheduler) {
+        this.sender = sender;
+        this.listener = listener;
+        this.scheduler = scheduler;
+    }
+
+    private static Scheduler mainThreadScheduler() {
+        Handler handler = new Handler(Looper.getMainLooper());
+        return new Scheduler() {
+            @Override
+            public void postDelayed(Runnable task, long delayMs) {
+                handler.postDelayed(task, delayMs);
+            }
+
+            @Override
+            public void cancel(Runnable task) {
+                handler.removeCallbacks(task);
+            }
+
+            @Override
+            public void cancelAll() {
+                handler.removeCallbacksAndMessages(null);
+            }
+        };
+    }
+
+    /**
+     * Поставить команду в очередь. Неотправленная предыдущая команда для устройства отменяется.
+     */
+    public void submit(int deviceId, String newState) {
+        if (closed) {
+            return;
+        }
+
+        DeviceChannel channel = channels.get(deviceId);
+        if (channel == null) {
+            channel = new DeviceChannel();
+            channels.put(deviceId, channel);
+        }
+
+        channel.intendedState = newState;
+        channel.intendedSeq = ++nextSeq;
+
+        if (channel.pendingSend != null) {
+            scheduler.cancel(channel.pendingSend);
+        }
+        DeviceChannel target = channel;
+        channel.pendingSend = () -> {
+            target.pendingSend = null;
+            send(deviceId, target);
+        };
+        scheduler.postDelayed(channel.pendingSend, SETTLE_WINDOW_MS);
+    }
+
+    /**
+     * Состояние устройства изменилось не через эту очередь (поток событий, другой телефон,
+     * автоматизация, локальный брокер, отправка из журнала). Если оно отличается от последнего
+     * подтверждённого, подтверждённое забывается — иначе возврат переключателя в прежнее
+     * положение был бы принят за уже выполненный и не отправлен.
+     */
+    public void onExternalState(int deviceId, String state) {
+        DeviceChannel channel = channels.get(deviceId);
+        if (channel != null && channel.lastAckedState != null
+                && !channel.lastAckedState.equals(state)) {
+            channel.lastAckedState = null;
+        }
+    }
+
+    private void send(int deviceId, DeviceChannel channel) {
+        if (closed || channel.inFlight) {
+            // Команда уйдёт после ответа на текущий запрос
+            return;
+        }
+        if (channel.intendedSeq <= settledSeq(channel)) {
+            return;
+        }
+        if (channel.intendedState.equals(channel.lastAckedState)) {
+            // Пользователь вернул переключатель в уже подтверждённое положение,
+            // и с тех пор устройство не менялось извне
+            channel.lastAckedSeq = channel.intendedSeq;
+            listener.onCommandAcknowledged(deviceId, channel.intendedState);
+            return;
+        }
+
+        String state = channel.intendedState;
+        long seq = channel.intendedSeq;
+        channel.inFlight = true;
+
+        Runnable timeout = () -> {
+            if (channel.inFlight && channel.intendedSeq == seq) {
+                channel.timedOutSeq = seq;
+                channel.failedSeq = seq;
+                listener.onCommandFailed(deviceId, state,
+                        new TimeoutException("Превышено время ожидания ответа"));
+            }
+        };
+        scheduler.postDelayed(timeout, COMMAND_TIMEOUT_MS);
+
+        CompletableFuture<Map<String, Object>> call = sender.send(deviceId, state);
+        channel.inFlightCall = call;
+        channel.inFlightSeq = seq;
+        call.whenComplete((result, error) -> scheduler.postDelayed(() -> {
+            scheduler.cancel(timeout);
+            onResult(deviceId, channel, seq, state, error);
+        }, 0));
+    }
+
+    private void onResult(int deviceId, DeviceChannel channel, long seq, String state, Throwable error) {
+        channel.inFlight = false;
+        channel.inFlightCall = null;
+        if (closed) {
+            return;
+        }
+
+        boolean superseded = channel.intendedSeq > seq;
+
+        if (channel.timedOutSeq == seq) {
+            // О команде уже сообщили по таймауту, UI откатил состояние. Поздний успех не
+            // показываем: устройство всё же переключилось, и фактическое состояние придёт
+            // потоком событий; до тех пор подтверждённое состояние неизвестно
+            if (error == null) {
+                channel.lastAckedState = null;
+            }
+        } else if (error == null && seq > channel.lastAckedSeq) {
+            channel.lastAckedSeq = seq;
+            channel.lastAckedState = state;
+            if (!superseded) {
+                listener.onCommandAcknowledged(deviceId, state);
+            }
+        } else if (error != null && !superseded) {
+            channel.failedSeq = seq;
+            listener.onCommandFailed(deviceId, state, error);
+        }
+
+        // За время запроса пришла новая команда, и её окно уже истекло — отправляем
+        if (superseded && channel.pendingSend == null) {
+            send(deviceId, channel);
+        }
+    }
+
+    /**
+     * Есть ли у устройства неподтверждённая команда
+     */
+    public boolean hasPending(int deviceId) {
+        DeviceChannel channel = channels.get(deviceId);
+        return channel != null && channel.intendedSeq > settledSeq(channel);
+    }
+
+    // Последняя команда, по которой уже сообщили результат
+    private static long settledSeq(DeviceChannel channel) {
+        return Math.max(channel.lastAckedSeq, channel.failedSeq);
+    }
+
+    /**
+     * Закрыть очередь. Команды пользователя не теряются: ожидающие окна отправляются сразу
+     * (после текущего запроса к устройству, если он есть), запросы в полёте не отменяются.
+     * Результаты после закрытия игнорируются.
+     */
+    public void close() {
+        closed = true;
+        scheduler.cancelAll();
+
+        for (Map.Entry<Integer, DeviceChannel> entry : channels.entrySet()) {
+            int deviceId = entry.getKey();
+            DeviceChannel channel = entry.getValue();
+            if (channel.intendedSeq <= settledSeq(channel)
+                    || channel.intendedState.equals(channel.lastAckedState)
+                    || (channel.inFlightCall != null && channel.inFlightSeq == channel.intendedSeq)) {
+                // Нечего отправлять или последняя команда уже в полёте
+                continue;
+            }
+            String state = channel.intendedState;
+            if (channel.inFlightCall != null) {
+                channel.inFlightCall.whenComplete((result, error) ->
+                        sender.send(deviceId, state));
+            } else {
+                sender.send(deviceId, state);
+            }
+        }
+        channels.clear();
+    }
+}
@@ -4,29 +4,64 @@ import android.content.Context;
 import android.util.Log;
 
 import com.project.smarthome.api.ApiClient;
+import com.project.smarthome.api.ApiFutures;
 import com.project.smarthome.api.ApiService;
+import com.project.smarthome.api.ConditionalGetCache;
+import com.project.smarthome.api.LanMqttClient;
+import com.project.smarthome.database.AppDatabase;
+import com.project.smarthome.database.DeviceEntity;
+import com.project.smarthome.database.HomeEntity;
+import com.project.smarthome.database.RoomEntity;
+import com.project.smarthome.models.devices.BulkDeviceActionRequest;
+import com.project.smarthome.models.devices.BulkDeviceActionResponse;
 import com.project.smarthome.models.devices.Device;
+import com.project.smarthome.models.devices.DeviceCommand;
 import com.project.smarthome.models.devices.DeviceCreateRequest;
+import com.project.smarthome.models.homes.Home;
+import com.project.smarthome.models.homes.room.Room;
+import com.project.smarthome.models.homes.room.RoomResponse;
+import com.project.smarthome.utils.AppExecutors;
 import com.project.smarthome.utils.SharedPrefManager;
+import com.project.smarthome.utils.SingleFlight;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
-import retrofit2.Call;
-import retrofit2.Callback;
+import retrofit2.HttpException;
 import retrofit2.Response;
 
 public class DeviceRepository {
 
     private static final String TAG = "DeviceRepository";
 
+    // Общие на процесс: экраны с разными экземплярами репозитория делят один запрос
+    private static final SingleFlight<List<Device>> deviceListFlights = new SingleFlight<>();
+    private static final SingleFlight<List<Room>> roomListFlights = new SingleFlight<>();
+    private static final SingleFlight<List<Home>> homeListFlights = new SingleFlight<>();
+    private static final SingleFlight<Device> deviceFlights = new SingleFlight<>();
+
+    // Дома, для которых в этом процессе уже был полный список: первая синхронизация
+    // после запуска всегда полная, чтобы снимок не расходился с сервером после сброса его БД
+    private static final Set<Integer> fullySyncedHomes = ConcurrentHashMap.newKeySet();
+
     private final ApiService apiService;
     private final SharedPrefManager sharedPrefManager;
+    private final AppDatabase database;
+    private final ConditionalGetCache conditionalGetCache;
+    private final LanMqttClient lanClient;
 
     public DeviceRepository(Context context) {
         this.apiService = ApiClient.getApiService();
         this.sharedPrefManager = SharedPrefManager.getInstance(context);
+        this.database = AppDatabase.getInstance(context);
+        this.conditionalGetCache = ApiClient.getConditionalGetCache();
+        this.lanClient = LanMqttClient.getInstance(context);
     }
 
     /* ==========================
@@ -39,7 +74,17 @@ public class DeviceRepository {
     }
 
     private String authHeader() {
-        return "Bearer " + sharedPrefManager.getToken();
+        return sharedPrefManager.getAuthHeader();
+    }
+
+    private static <T> CompletableFuture<T> notAuthenticated() {
+        return failed(new IllegalStateException("Пользователь не авторизован"));
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable error) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        return future;
     }
 
     /* ==========================
@@ -47,45 +92,122 @@ public class DeviceRepository {
        ========================== */
 
     /**
-     * Получить список устройств дома
-     * GET /api/devices/homes/{home_id}
+     * Получить список устройств дома (stale-while-revalidate).
+     * Сначала отдаёт сохранённый снимок через onCached, затем свежий список с сервера через onSuccess.
+     *
+     * @return сетевой запрос; после его отмены колбэк больше не вызывается
      */
-    public CompletableFuture<List<Device>> getDevices(int homeId) {
-        CompletableFuture<List<Device>> future = new CompletableFuture<>();
+    public CompletableFuture<List<Device>> getDevices(int homeId, RepositoryCallback<List<Device>> callback) {
+        return staleWhileRevalidate(getCachedDevices(homeId), refreshDevices(homeId), callback);
+    }
 
+    /**
+     * Загрузить список устройств дома с сервера и обновить локальный снимок.
+     * Если снимок уже синхронизировался, запрашиваются только изменения после отметки
+     * (delta-синхронизация), иначе — полный список. Полный список запрашивается также
+     * при первой синхронизации дома после запуска и если сервер отклонил delta-запрос.
+     * Одновременные вызовы для одного дома разделяют один запрос.
+     */
+    public CompletableFuture<List<Device>> refreshDevices(int homeId) {
         if (!isAuthenticated()) {
-            future.completeExceptionally(
-                    new IllegalStateException("Пользователь не авторизован")
-            );
-            return future;
+            return notAuthenticated();
         }
 
-        apiService.getDevices(homeId)
-                .enqueue(new Callback<List<Device>>() {
-                    @Override
-                    public void onResponse(
-                            Call<List<Device>> call,
-                            Response<List<Device>> response
-                    ) {
-                        if (response.isSuccessful() && response.body() != null) {
-                            future.complete(response.body());
-                        } else {
-                            future.completeExceptionally(
-                                    new RuntimeException(
-                                            "Ошибка получения устройств: " + response.code()
-                                    )
-                            );
-                        }
-                    }
+        return deviceListFlights.run("devices:" + homeId, () -> ApiFutures.thenComposeCancellable(
+                CompletableFuture.supplyAsync(
+                        () -> database.deviceDao().getWatermark(homeId), AppExecutors.database()),
+                watermark -> watermark == null || !fullySyncedHomes.contains(homeId)
+                        ? fetchAllDevices(homeId)
+                        : fetchDeviceChanges(homeId, watermark)));
+    }
 
-                    @Override
-                    public void onFailure(Call<List<Device>> call, Throwable t) {
-                        Log.e(TAG, "getDevices failed", t);
-                        future.completeExceptionally(t);
-                    }
-                });
+    /**
+     * Полный список устройств дома.
+     * Запрос условный: при 304 возвращается уже разобранный список из ConditionalGetCache.
+     * GET /api/devices/homes/{home_id}
+     */
+    private CompletableFuture<List<Device>> fetchAllDevices(int homeId) {
+        CompletableFuture<Response<List<Device>>> call = apiService.getDevicesIfModified(homeId);
+        return ApiFutures.propagateCancel(call.thenApply(response -> {
+            List<Device> notModified = notModifiedBody(response);
+            if (notModified != null) {
+                cacheDevices(homeId, notModified);
+                fullySyncedHomes.add(homeId);
+                return notModified;
+            }
+            if (response.isSuccessful() && response.body() != null) {
+                rememberConditional(response, response.body());
+                cacheDevices(homeId, response.body());
+                fullySyncedHomes.add(homeId);
+                return response.body();
+            }
+            throw new RuntimeException("Ошибка получения устройств: " + response.code());
+        }), call);
+    }
 
-        return future;
+    /**
+     * Изменения устройств дома после отметки since; результат сливается со снимком в БД.
+     * Если сервер ответил ошибкой или ответ не удалось применить, снимок перезагружается
+     * полностью; сетевые ошибки возвращаются как есть.
+     * GET /api/devices/homes/{home_id}?since=...
+     */
+    private CompletableFuture<List<Device>> fetchDeviceChanges(int homeId, String since) {
+        CompletableFuture<List<Device>> delta = ApiFutures.thenComposeCancellable(
+                apiService.getDeviceChanges(homeId, since),
+                changes -> mergeDeviceChanges(homeId, since, changes));
+        return ApiFutures.recoverCancellable(delta, error -> {
+            if (error instanceof IOException) {
+                return failed(error);
+            }
+            Log.w(TAG, "Delta sync failed for home " + homeId + ", falling back to full list", error);
+            return fetchAllDevices(homeId);
+        });
+    }
+
+    /**
+     * Применяет delta-ответ к снимку в БД и возвращает итоговый список устройств дома
+     */
+    private CompletableFuture<List<Device>> mergeDeviceChanges(
+            int homeId,
+            String since,
+            List<Device> changes
+    ) {
+        List<DeviceEntity> changed = new ArrayList<>();
+        List<Integer> deletedIds = new ArrayList<>();
+        for (Device device : changes) {
+            if (device.isDeleted()) {
+                deletedIds.add(device.getId());
+            } else {
+                changed.add(DeviceEntity.fromDevice(device));
+            }
+        }
+        String watermark = latestUpdate(changes, since);
+
+        return CompletableFuture.supplyAsync(() -> {
+            if (!changes.isEmpty()) {
+                database.deviceDao().applyDelta(homeId, changed, deletedIds, watermark);
+            }
+            List<Device> result = new ArrayList<>();
+            for (DeviceEntity entity : database.deviceDao().getForHome(homeId)) {
+                result.add(entity.toDevice());
+            }
+            return result;
+        }, AppExecutors.database());
+    }
+
+    /**
+     * Наибольший last_update в списке. ISO-8601 строки сервера одного формата,
+     * поэтому их можно сравнивать лексикографически.
+     */
+    private static String latestUpdate(List<Device> devices, String fallback) {
+        String latest = fallback;
+        for (Device device : devices) {
+            String lastUpdate = device.getLastUpdate();
+            if (lastUpdate != null && (latest == null || lastUpdate.compareTo(latest) > 0)) {
+                latest = lastUpdate;
+            }
+        }
+        return latest;
     }
 
     /**
@@ -93,41 +215,14 @@ public class DeviceRepository {
      * GET /api/devices/{device_id}
      */
     public CompletableFuture<Device> getDevice(int deviceId) {
-        CompletableFuture<Device> future = new CompletableFuture<>();
+        return deviceFlights.run("device:" + deviceId, () -> fetchDevice(deviceId));
+    }
 
+    private CompletableFuture<Device> fetchDevice(int deviceId) {
         if (!isAuthenticated()) {
-            future.completeExceptionally(
-                    new IllegalStateException("Пользователь не авторизован")
-            );
-            return future;
+            return notAuthenticated();
         }
-
-        apiService.getDevice(deviceId)
-                .enqueue(new Callback<Device>() {
-                    @Override
-                    public void onResponse(
-                            Call<Device> call,
-                            Response<Device> response
-                    ) {
-                        if (response.isSuccessful() && response.body() != null) {
-                            future.complete(response.body());
-                        } else {
-                            future.completeExceptionally(
-                                    new RuntimeException(
-                                            "Устройство не найдено: " + response.code()
-                                    )
-                            );
-                        }
-                    }
-
-                    @Override
-                    public void onFailure(Call<Device> call, Throwable t) {
-                        Log.e(TAG, "getDevice failed", t);
-                        future.completeExceptionally(t);
-                    }
-                });
-
-        return future;
+        return ApiFutures.withErrorMessage(apiService.getDevice(deviceId), "Устройство не найдено");
     }
 
     /**
@@ -138,85 +233,298 @@ public class DeviceRepository {
             int homeId,
             DeviceCreateRequest request
     ) {
-        CompletableFuture<Device> future = new CompletableFuture<>();
-
         if (!isAuthenticated()) {
-            future.completeExceptionally(
-                    new IllegalStateException("Пользователь не авторизован")
-            );
-            return future;
+            return notAuthenticated();
         }
-
-        apiService.createDevice(homeId, request)
-                .enqueue(new Callback<Device>() {
-                    @Override
-                    public void onResponse(
-                            Call<Device> call,
-                            Response<Device> response
-                    ) {
-                        if (response.isSuccessful() && response.body() != null) {
-                            future.complete(response.body());
-                        } else {
-                            future.completeExceptionally(
-                                    new RuntimeException(
-                                            "Ошибка создания устройства: " + response.code()
-                                    )
-                            );
-                        }
-                    }
-
-                    @Override
-                    public void onFailure(Call<Device> call, Throwable t) {
-                        Log.e(TAG, "createDevice failed", t);
-                        future.completeExceptionally(t);
-                    }
-                });
-
-        return future;
+        return ApiFutures.withErrorMessage(
+                apiService.createDevice(homeId, request), "Ошибка создания устройства");
     }
 
     /**
-     * Управление устройством
+     * Управление устройством.
+     * В домашней сети команда публикуется напрямую в локальный брокер (MQTT {base}/device/{id}/cmd),
+     * если сервер уже разрешал этому пользователю управлять устройством (см. LanMqttClient).
+     * Если брокер недоступен или хаб не подтвердил новое состояние — команда отправляется через сервер:
      * POST /api/devices/{device_id}/action?new_state=...
+     * Состояние, выполненное напрямую, хаб публикует и в облачный брокер — по нему сервер
+     * обновляет БД и поток событий дома, как после команды через REST.
      */
     public CompletableFuture<Map<String, Object>> controlDevice(
             int deviceId,
             String newState
     ) {
-        CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+        if (!isAuthenticated()) {
+            return notAuthenticated();
+        }
+        if (!lanClient.canControl(deviceId)) {
+            return controlDeviceRemote(deviceId, newState);
+        }
+        return ApiFutures.recoverCancellable(
+                lanClient.publishCommand(deviceId, newState)
+                        .thenApply(ignored -> lanResult(deviceId, newState)),
+                error -> {
+                    Log.d(TAG, "LAN command failed, falling back to REST: " + error);
+                    return controlDeviceRemote(deviceId, newState);
+                });
+    }
+
+    // Ответ сервера решает, можно ли дальше управлять устройством напрямую
+    private CompletableFuture<Map<String, Object>> controlDeviceRemote(int deviceId, String newState) {
+        CompletableFuture<Map<String, Object>> call = apiService.controlDevice(deviceId, newState);
+        call.whenComplete((result, error) -> {
+            if (error == null) {
+                lanClient.authorize(deviceId);
+                return;
+            }
+            Throwable cause = ApiFutures.unwrap(error);
+            if (cause instanceof HttpException) {
+                int code = ((HttpException) cause).code();
+                if (code == 403 || code == 404) {
+                    lanClient.revoke(deviceId);
+                }
+            }
+        });
+        return ApiFutures.withErrorMessage(call, "Ошибка управления устройством");
+    }
+
+    // Ответ в том же виде, что и у POST /api/devices/{device_id}/action
+    private static Map<String, Object> lanResult(int deviceId, String newState) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("status", "ok");
+        result.put("device", deviceId);
+        result.put("state", newState);
+        return result;
+    }
 
+    public void addLanStateListener(LanMqttClient.StateListener listener) {
+        lanClient.addStateListener(listener);
+    }
+
+    public void removeLanStateListener(LanMqttClient.StateListener listener) {
+        lanClient.removeStateListener(listener);
+    }
+
+    /**
+     * Пакетное управление несколькими устройствами за один запрос
+     * POST /api/devices/actions
+     */
+    public CompletableFuture<BulkDeviceActionResponse> controlDevices(
+            List<DeviceCommand> commands
+    ) {
         if (!isAuthenticated()) {
-            future.completeExceptionally(
-                    new IllegalStateException("Пользователь не авторизован")
-            );
-            return future;
+            return notAuthenticated();
         }
+        return ApiFutures.withErrorMessage(
+                apiService.controlDevices(new BulkDeviceActionRequest(commands)),
+                "Ошибка пакетного управления устройствами");
+    }
 
-        apiService.controlDevice(deviceId, newState)
-                .enqueue(new Callback<Map<String, Object>>() {
-                    @Override
-                    public void onResponse(
-                            Call<Map<String, Object>> call,
-                            Response<Map<String, Object>> response
-                    ) {
-                        if (response.isSuccessful() && response.body() != null) {
-                            future.complete(response.body());
-                        } else {
-                            future.completeExceptionally(
-                                    new RuntimeException(
-                                            "Ошибка управления устройством: " + response.code()
-                                    )
-                            );
-                        }
-                    }
+    /* ==========================
+       Комнаты и дома
+       ========================== */
+
+    /**
+     * Получить список комнат дома (stale-while-revalidate)
+     */
+    public CompletableFuture<List<Room>> getRooms(int homeId, RepositoryCallback<List<Room>> callback) {
+        return staleWhileRevalidate(getCachedRooms(homeId), refreshRooms(homeId), callback);
+    }
+
+    /**
+     * Загрузить комнаты дома с сервера и обновить локальный снимок (условный запрос)
+     * GET /api/rooms/homes/{home_id}
+     */
+    public CompletableFuture<List<Room>> refreshRooms(int homeId) {
+        return roomListFlights.run("rooms:" + homeId, () -> fetchRooms(homeId));
+    }
+
+    private CompletableFuture<List<Room>> fetchRooms(int homeId) {
+        if (!isAuthenticated()) {
+            return notAuthenticated();
+        }
+
+        CompletableFuture<Response<List<RoomResponse>>> call =
+                apiService.getRoomsIfModified(authHeader(), homeId);
+        return ApiFutures.propagateCancel(call.thenApply(response -> {
+            // В кэше условных запросов лежат уже сконвертированные комнаты
+            List<Room> notModified = notModifiedBody(response);
+            if (notModified != null) {
+                return notModified;
+            }
+            if (response.isSuccessful() && response.body() != null) {
+                List<Room> rooms = new ArrayList<>();
+                for (RoomResponse roomResponse : response.body()) {
+                    rooms.add(Room.fromResponse(roomResponse));
+                }
+                rememberConditional(response, rooms);
+                cacheRooms(homeId, rooms);
+                return rooms;
+            }
+            throw new RuntimeException("Ошибка загрузки комнат: " + response.code());
+        }), call);
+    }
+
+    /**
+     * Получить список домов пользователя (stale-while-revalidate)
+     */
+    public CompletableFuture<List<Home>> getHomes(RepositoryCallback<List<Home>> callback) {
+        return staleWhileRevalidate(getCachedHomes(), refreshHomes(), callback);
+    }
+
+    /**
+     * Загрузить дома пользователя с сервера и обновить локальный снимок (условный запрос)
+     * GET /api/family/my-homes
+     */
+    public CompletableFuture<List<Home>> refreshHomes() {
+        return homeListFlights.run("homes", this::fetchHomes);
+    }
+
+    private CompletableFuture<List<Home>> fetchHomes() {
+        if (!isAuthenticated()) {
+            return notAuthenticated();
+        }
+
+        CompletableFuture<Response<List<Home>>> call = apiService.getMyHomesIfModified();
+        return ApiFutures.propagateCancel(call.thenApply(response -> {
+            List<Home> notModified = notModifiedBody(response);
+            if (notModified != null) {
+                return notModified;
+            }
+            if (response.isSuccessful() && response.body() != null) {
+                rememberConditional(response, response.body());
+                cacheHomes(response.body());
+                return response.body();
+            }
+            throw new RuntimeException("Ошибка получения домов: " + response.code());
+        }), call);
+    }
+
+    /* ==========================
+       Локальный снимок
+       ========================== */
+
+    public CompletableFuture<List<Device>> getCachedDevices(int homeId) {
+        return CompletableFuture.supplyAsync(() -> {
+            List<Device> result = new ArrayList<>();
+            for (DeviceEntity entity : database.deviceDao().getForHome(homeId)) {
+                result.add(entity.toDevice());
+            }
+            return result;
+        }, AppExecutors.database());
+    }
+
+    public CompletableFuture<List<Room>> getCachedRooms(int homeId) {
+        return CompletableFuture.supplyAsync(() -> {
+            List<Room> result = new ArrayList<>();
+            for (RoomEntity entity : database.roomDao().getForHome(homeId)) {
+                result.add(entity.toRoom());
+            }
+            return result;
+        }, AppExecutors.database());
+    }
+
+    public CompletableFuture<List<Home>> getCachedHomes() {
+        return CompletableFuture.supplyAsync(() -> {
+            List<Home> result = new ArrayList<>();
+            for (HomeEntity entity : database.homeDao().getAll()) {
+                result.add(entity.toHome());
+            }
+            return result;
+        }, AppExecutors.database());
+    }
 
-                    @Override
-                    public void onFailure(Call<Map<String, Object>> call, Throwable t) {
-                        Log.e(TAG, "controlDevice failed", t);
-                        future.completeExceptionally(t);
+    private void cacheDevices(int homeId, List<Device> devices) {
+        List<DeviceEntity> entities = new ArrayList<>();
+        for (Device device : devices) {
+            entities.add(DeviceEntity.fromDevice(device));
+        }
+        String watermark = latestUpdate(devices, null);
+        AppExecutors.database().execute(() ->
+                database.deviceDao().replaceForHome(homeId, entities, watermark));
+    }
+
+    /**
+     * Обновить одно устройство в снимке (например, по событию из потока).
+     * Отметку синхронизации не сдвигает — её двигают только ответы списка.
+     */
+    public void cacheDevice(Device device) {
+        if (device.isDeleted()) {
+            List<Integer> ids = new ArrayList<>();
+            ids.add(device.getId());
+            AppExecutors.database().execute(() -> database.deviceDao().deleteByIds(ids));
+            return;
+        }
+        DeviceEntity entity = DeviceEntity.fromDevice(device);
+        AppExecutors.database().execute(() -> database.deviceDao().insert(entity));
+    }
+
+    private void cacheRooms(int homeId, List<Room> rooms) {
+        List<RoomEntity> entities = new ArrayList<>();
+        for (Room room : rooms) {
+            entities.add(RoomEntity.fromRoom(room));
+        }
+        AppExecutors.database().execute(() ->
+                database.roomDao().replaceForHome(homeId, entities));
+    }
+
+    private void cacheHomes(List<Home> homes) {
+        List<HomeEntity> entities = new ArrayList<>();
+        for (Home home : homes) {
+            entities.add(HomeEntity.fromHome(home));
+        }
+        AppExecutors.database().execute(() ->
+                database.homeDao().replaceAll(entities));
+    }
+
+    /* ==========================
+       Условные запросы (ETag)
+       ========================== */
+
+    /**
+     * Если сервер ответил 304 — возвращает ранее разобранный ответ, иначе null
+     */
+    private <T> T notModifiedBody(Response<?> response) {
+        if (response.code() != ConditionalGetCache.HTTP_NOT_MODIFIED) {
+            return null;
+        }
+        return conditionalGetCache.getBody(response.raw().request().url());
+    }
+
+    private void rememberConditional(Response<?> response, Object body) {
+        conditionalGetCache.put(response.raw().request().url(), response.headers().get("ETag"), body);
+    }
+
+    /**
+     * Отдаёт непустой снимок из кэша, затем результат сети.
+     * Сетевой запрос стартует сразу, но его результат доставляется только после снимка,
+     * чтобы устаревшие данные не перезаписали свежие.
+     */
+    private <T> CompletableFuture<List<T>> staleWhileRevalidate(
+            CompletableFuture<List<T>> cached,
+            CompletableFuture<List<T>> fresh,
+            RepositoryCallback<List<T>> callback
+    ) {
+        CompletableFuture<Void> cachedDelivered = cached
+                .thenAccept(list -> {
+                    if (!list.isEmpty() && !fresh.isCancelled()) {
+                        callback.onCached(list);
                     }
+                })
+                .exceptionally(th -> {
+                    Log.w(TAG, "Cache read failed", th);
+                    return null;
                 });
 
-        return future;
+        fresh.whenComplete((list, th) -> cachedDelivered.thenRun(() -> {
+            if (fresh.isCancelled()) {
+                return;
+            }
+            if (th == null) {
+                callback.onSuccess(list);
+            } else {
+                callback.onError(ApiFutures.unwrap(th).getMessage());
+            }
+        }));
+        return fresh;
     }
 }
@@ -0,0 +1,160 @@
+package com.project.smarthome.repositories;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+
+import com.project.smarthome.api.ApiFutures;
+import com.project.smarthome.database.AppDatabase;
+import com.project.smarthome.database.PendingCommandDao;
+import com.project.smarthome.database.PendingCommandEntity;
+import com.project.smarthome.utils.AppExecutors;
+import com.project.smarthome.utils.ConnectivityMonitor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Журнал команд управления, которые не удалось отправить из-за сети.
+ *
+ * Команды хранятся в Room (pending_commands), по одной на устройство — последнее намерение.
+ * Когда сеть появляется (или сервер снова ответил), журнал отправляется по порядку,
+ * по одной команде за раз; при новой сетевой ошибке повтор останавливается до следующего раза,
+ * а не повторяется в цикле. Команды старше COMMAND_TTL_MS не отправляются.
+ *
+ * Один экземпляр на процесс: журнал переживает экраны и ViewModel.
+ */
+public class OfflineCommandQueue {
+
+    public static final long COMMAND_TTL_MS = 5 * 60_000;
+
+    public interface Listener {
+        // Вызывается в главном потоке; error == null — команда выполнена
+        void onReplayResult(int deviceId, String state, @Nullable Throwable error);
+    }
+
+    private static volatile OfflineCommandQueue instance;
+
+    private final DeviceRepository repository;
+    private final PendingCommandDao dao;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private final AtomicBoolean replaying = new AtomicBoolean(false);
+    private volatile boolean replayRequested = false;
+
+    public static OfflineCommandQueue getInstance(Context context) {
+        if (instance == null) {
+            synchronized (OfflineCommandQueue.class) {
+                if (instance == null) {
+                    instance = new OfflineCommandQueue(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private OfflineCommandQueue(Context context) {
+        this.repository = new DeviceRepository(context);
+        this.dao = AppDatabase.getInstance(context).pendingCommandDao();
+
+        ConnectivityMonitor.getInstance(context).addListener((online, metered) -> {
+            if (online) {
+                replay();
+            }
+        });
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Сохранить команду до появления сети. Предыдущая команда для устройства заменяется.
+     */
+    public void enqueue(int deviceId, String state) {
+        long enqueuedAt = System.currentTimeMillis();
+        AppExecutors.database().execute(() ->
+                dao.upsert(new PendingCommandEntity(deviceId, state, enqueuedAt)));
+    }
+
+    /**
+     * Забыть сохранённую команду — например, после успешной отправки более новой
+     */
+    public void discard(int deviceId) {
+        AppExecutors.database().execute(() -> dao.deleteForDevice(deviceId));
+    }
+
+    /**
+     * Отправить журнал. Повторный вызов во время отправки запускает ещё один проход после неё.
+     */
+    public void replay() {
+        if (!replaying.compareAndSet(false, true)) {
+            replayRequested = true;
+            return;
+        }
+        AppExecutors.database().execute(() -> {
+            long cutoff = System.currentTimeMillis() - COMMAND_TTL_MS;
+            List<PendingCommandEntity> fresh = new ArrayList<>();
+            for (PendingCommandEntity command : dao.getAll()) {
+                if (command.enqueuedAt < cutoff) {
+                    dao.delete(command.deviceId, command.enqueuedAt);
+                    notifyResult(command, new TimeoutException("Команда устарела и не была отправлена"));
+                } else {
+                    fresh.add(command);
+                }
+            }
+            sendNext(fresh, 0);
+        });
+    }
+
+    // Команды уходят строго по очереди: следующая — после ответа на предыдущую
+    private void sendNext(List<PendingCommandEntity> commands, int index) {
+        if (index >= commands.size()) {
+            finishReplay();
+            return;
+        }
+
+        PendingCommandEntity command = commands.get(index);
+        repository.controlDevice(command.deviceId, command.state).whenComplete((result, error) -> {
+            Throwable cause = error != null ? ApiFutures.unwrap(error) : null;
+            if (cause instanceof IOException) {
+                // Сети всё ещё нет — остальное ждёт следующего подключения
+                finishReplay();
+                return;
+            }
+            // Выполнена или отклонена сервером — в журнале больше не нужна
+            AppExecutors.database().execute(() -> {
+                dao.delete(command.deviceId, command.enqueuedAt);
+                sendNext(commands, index + 1);
+            });
+            notifyResult(command, cause);
+        });
+    }
+
+    private void finishReplay() {
+        replaying.set(false);
+        if (replayRequested) {
+            replayRequested = false;
+            replay();
+        }
+    }
+
+    private void notifyResult(PendingCommandEntity command, @Nullable Throwable error) {
+        mainHandler.post(() -> {
+            for (Listener listener : listeners) {
+                listener.onReplayResult(command.deviceId, command.state, error);
+            }
+        });
+    }
+}
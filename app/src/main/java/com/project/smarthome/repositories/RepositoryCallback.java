@@ -4,4 +4,12 @@ public interface RepositoryCallback<T> {
     void onSuccess(T data);
 
     void onError(String errorMessage);
+
+    /**
+     * Снимок из локального кэша, отданный до ответа сервера.
+     * По умолчанию обрабатывается как обычный результат.
+     */
+    default void onCached(T data) {
+        onSuccess(data);
+    }
 }
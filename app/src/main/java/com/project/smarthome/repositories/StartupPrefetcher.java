@@ -0,0 +1,63 @@
+package com.project.smarthome.repositories;
+
+import android.content.Context;
+
+import com.project.smarthome.models.homes.Home;
+import com.project.smarthome.utils.SharedPrefManager;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Загрузка данных главного экрана во время заставки: дома → комнаты и устройства активного дома.
+ *
+ * Результаты попадают в локальный снимок DeviceRepository, поэтому первый кадр главного экрана
+ * рисуется уже с данными. Если экран откроется раньше, чем закончится загрузка,
+ * его запросы присоединятся к уже идущим (SingleFlight), а не продублируют их.
+ */
+public class StartupPrefetcher {
+
+    private static final long NO_HOME = -1;
+
+    private final DeviceRepository repository;
+    private final SharedPrefManager sharedPrefManager;
+
+    public StartupPrefetcher(Context context) {
+        this.repository = new DeviceRepository(context);
+        this.sharedPrefManager = SharedPrefManager.getInstance(context);
+    }
+
+    /**
+     * Запустить загрузку. Future завершается, когда снимок активного дома обновлён,
+     * и завершается успешно даже без домов. Загрузку не отменяют: если заставка уже закрылась,
+     * данные всё равно пригодятся главному экрану.
+     */
+    public CompletableFuture<Void> prefetch() {
+        if (!repository.isAuthenticated()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        long activeHomeId = sharedPrefManager.getActiveHomeId();
+        if (activeHomeId != NO_HOME) {
+            // Дом уже известен — его данные грузим параллельно со списком домов
+            return CompletableFuture.allOf(repository.refreshHomes(), prefetchHome((int) activeHomeId));
+        }
+
+        return repository.refreshHomes().thenCompose(homes -> {
+            Home home = firstHome(homes);
+            if (home == null) {
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            sharedPrefManager.saveActiveHomeId(home.getId());
+            return prefetchHome(home.getId());
+        });
+    }
+
+    private CompletableFuture<Void> prefetchHome(int homeId) {
+        return CompletableFuture.allOf(repository.refreshRooms(homeId), repository.refreshDevices(homeId));
+    }
+
+    private static Home firstHome(List<Home> homes) {
+        return homes == null || homes.isEmpty() ? null : homes.get(0);
+    }
+}
@@ -15,6 +15,7 @@ import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.project.smarthome.R;
 import com.project.smarthome.api.ApiClient;
 import com.project.smarthome.api.ApiService;
+import com.project.smarthome.api.RequestScope;
 import com.project.smarthome.models.Automation;
 import com.project.smarthome.adapters.AutomationAdapter;
 import com.project.smarthome.models.EnableAutomationRequest;
@@ -33,10 +34,14 @@ public class AutomationFragment extends Fragment {
     private List<Automation> automations;
     private FloatingActionButton fabAddAutomation;
 
+    // Загрузки, привязанные к view фрагмента; отменяются в onDestroyView
+    private RequestScope viewScope;
+
     @Nullable
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
         View view = inflater.inflate(R.layout.fragment_automation, container, false);
+        viewScope = new RequestScope();
 
         initViews(view);
         setupRecyclerView();
@@ -67,7 +72,7 @@ public class AutomationFragment extends Fragment {
                 ApiClient.getApiService(requireContext());
 
         Call<List<Automation>> call = apiService.getAutomations();
-        call.enqueue(new Callback<List<Automation>>() {
+        viewScope.enqueue(call, new Callback<List<Automation>>() {
             @Override
             public void onResponse(Call<List<Automation>> call, Response<List<Automation>> response) {
                 if (response.isSuccessful() && response.body() != null) {
@@ -101,6 +106,10 @@ public class AutomationFragment extends Fragment {
             @Override
             public void onResponse(Call<EnableAutomationResponse> call,
                                    Response<EnableAutomationResponse> response) {
+                // Переключение не отменяем, но view могла уже исчезнуть
+                if (getView() == null) {
+                    return;
+                }
                 if (response.isSuccessful()) {
                     automation.setEnabled(!automation.isEnabled());
                     adapter.notifyDataSetChanged();
@@ -113,11 +122,20 @@ public class AutomationFragment extends Fragment {
 
             @Override
             public void onFailure(Call<EnableAutomationResponse> call, Throwable t) {
+                if (getView() == null) {
+                    return;
+                }
                 Toast.makeText(getContext(), "Ошибка сети: " + t.getMessage(), Toast.LENGTH_SHORT).show();
             }
         });
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        viewScope.cancelAll();
+    }
+
     private void openCreateAutomationDialog() {
         Toast.makeText(getContext(), "Создание автоматизации", Toast.LENGTH_SHORT).show();
         // Здесь можно открыть диалог создания автоматизации
@@ -0,0 +1,185 @@
+package com.project.smarthome.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Общие пулы потоков приложения вместо ForkJoinPool.commonPool().
+ *
+ *  - database() — один поток: запросы Room выполняются строго по порядку;
+ *  - io()       — блокирующие операции (файлы, ожидание ответов);
+ *  - compute()  — разбор и преобразование данных, по числу ядер;
+ *  - main()     — главный поток.
+ *
+ * Компонентам, которым нужен свой последовательный поток (фильтрация списка и т.п.),
+ * вместо собственного Executors.newSingleThreadExecutor выдаётся serial(compute()):
+ * задачи идут по одной и по порядку, но на потоках общего пула.
+ *
+ * Число потоков в каждом пуле ограничено, потоки именованы, а глубина очереди
+ * видна через stats(), чтобы было видно, какой пул не справляется.
+ */
+public final class AppExecutors {
+
+    private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+
+    private static final MonitoredExecutor DATABASE =
+            new MonitoredExecutor("app-db", 1, Process.THREAD_PRIORITY_BACKGROUND);
+    private static final MonitoredExecutor IO =
+            new MonitoredExecutor("app-io", 4, Process.THREAD_PRIORITY_BACKGROUND);
+    private static final MonitoredExecutor COMPUTE =
+            new MonitoredExecutor("app-compute", Math.max(2, CPU_COUNT - 1), Process.THREAD_PRIORITY_DEFAULT);
+    private static final Executor MAIN = new MainThreadExecutor();
+
+    private AppExecutors() {
+    }
+
+    public static ExecutorService database() {
+        return DATABASE;
+    }
+
+    public static ExecutorService io() {
+        return IO;
+    }
+
+    public static ExecutorService compute() {
+        return COMPUTE;
+    }
+
+    public static Executor main() {
+        return MAIN;
+    }
+
+    /**
+     * Исполнитель поверх pool, выполняющий задачи строго по одной в порядке поступления
+     */
+    public static Executor serial(Executor pool) {
+        return new SerialExecutor(pool);
+    }
+
+    /**
+     * Состояние пулов: имя → "active=…, queued=…, maxQueued=…, completed=…"
+     */
+    public static Map<String, String> stats() {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (MonitoredExecutor executor : new MonitoredExecutor[]{DATABASE, IO, COMPUTE}) {
+            result.put(executor.name, executor.describe());
+        }
+        return result;
+    }
+
+    /**
+     * Пул фиксированного размера с учётом глубины очереди
+     */
+    public static final class MonitoredExecutor extends ThreadPoolExecutor {
+        private final String name;
+        private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+        MonitoredExecutor(String name, int threads, int priority) {
+            super(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    new NamedThreadFactory(name, priority));
+            this.name = name;
+            // Простаивающие потоки не держим
+            allowCoreThreadTimeOut(true);
+        }
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            super.execute(command);
+            int depth = getQueue().size();
+            maxQueueDepth.accumulateAndGet(depth, Math::max);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getQueueDepth() {
+            return getQueue().size();
+        }
+
+        public int getMaxQueueDepth() {
+            return maxQueueDepth.get();
+        }
+
+        String describe() {
+            return "active=" + getActiveCount()
+                    + ", queued=" + getQueueDepth()
+                    + ", maxQueued=" + getMaxQueueDepth()
+                    + ", completed=" + getCompletedTaskCount();
+        }
+    }
+
+    private static final class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final int priority;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        NamedThreadFactory(String prefix, int priority) {
+            this.prefix = prefix;
+            this.priority = priority;
+        }
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            return new Thread(() -> {
+                Process.setThreadPriority(priority);
+                runnable.run();
+            }, prefix + "-" + counter.incrementAndGet());
+        }
+    }
+
+    private static final class SerialExecutor implements Executor {
+        private final Executor pool;
+        // Защищено this
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private Runnable active;
+
+        SerialExecutor(Executor pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public synchronized void execute(@NonNull Runnable command) {
+            tasks.add(() -> {
+                try {
+                    command.run();
+                } finally {
+                    scheduleNext();
+                }
+            });
+            if (active == null) {
+                scheduleNext();
+            }
+        }
+
+        private synchronized void scheduleNext() {
+            active = tasks.poll();
+            if (active != null) {
+                pool.execute(active);
+            }
+        }
+    }
+
+    private static final class MainThreadExecutor implements Executor {
+        private final Handler handler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            handler.post(command);
+        }
+    }
+}
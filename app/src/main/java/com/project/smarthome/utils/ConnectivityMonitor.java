@@ -0,0 +1,115 @@
+package com.project.smarthome.utils;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Состояние сети по колбэкам ConnectivityManager: есть ли сеть с доступом в интернет
+ * и лимитная ли она (мобильный интернет, точка доступа).
+ *
+ * Позволяет не ждать таймаута OkHttp, чтобы узнать, что сети нет: запросы без сети
+ * завершаются сразу, а фоновые запросы приостанавливаются на лимитной сети.
+ */
+public class ConnectivityMonitor {
+
+    public interface Listener {
+        // Вызывается в главном потоке, только при изменении состояния
+        void onConnectivityChanged(boolean online, boolean metered);
+    }
+
+    private static volatile ConnectivityMonitor instance;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile boolean online = true;
+    private volatile boolean metered = false;
+    // Wi-Fi или Ethernet — сеть, в которой может быть домашний брокер
+    private volatile boolean localNetwork = false;
+
+    public static ConnectivityMonitor getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ConnectivityMonitor.class) {
+                if (instance == null) {
+                    instance = new ConnectivityMonitor(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private ConnectivityMonitor(Context context) {
+        ConnectivityManager connectivityManager = context.getSystemService(ConnectivityManager.class);
+        if (connectivityManager == null) {
+            // Состояние неизвестно — считаем, что сеть есть, и полагаемся на таймауты
+            return;
+        }
+
+        update(connectivityManager.getNetworkCapabilities(connectivityManager.getActiveNetwork()));
+
+        connectivityManager.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onCapabilitiesChanged(@NonNull Network network,
+                                              @NonNull NetworkCapabilities capabilities) {
+                update(capabilities);
+            }
+
+            @Override
+            public void onLost(@NonNull Network network) {
+                update(null);
+            }
+        });
+    }
+
+    public boolean isOnline() {
+        return online;
+    }
+
+    public boolean isMetered() {
+        return metered;
+    }
+
+    public boolean isLocalNetwork() {
+        return localNetwork;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private synchronized void update(@Nullable NetworkCapabilities capabilities) {
+        boolean nowOnline = capabilities != null
+                && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET);
+        boolean nowMetered = capabilities != null
+                && !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+        boolean nowLocal = capabilities != null
+                && (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI)
+                || capabilities.hasTransport(NetworkCapabilities.TRANSPORT_ETHERNET));
+        if (nowOnline == online && nowMetered == metered && nowLocal == localNetwork) {
+            return;
+        }
+        online = nowOnline;
+        metered = nowMetered;
+        localNetwork = nowLocal;
+
+        mainHandler.post(() -> {
+            for (Listener listener : listeners) {
+                listener.onConnectivityChanged(nowOnline, nowMetered);
+            }
+        });
+    }
+}
@@ -0,0 +1,180 @@
+package com.project.smarthome.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.project.smarthome.models.devices.Device;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Фильтрация списка устройств по комнате и строке поиска в фоновом потоке
+ * (последовательно, на общем пуле AppExecutors.compute()).
+ *
+ * Нормализованные имена считаются один раз при смене списка, а не на каждое нажатие клавиши.
+ * Ввод с клавиатуры откладывается на SEARCH_DEBOUNCE_MS. Устаревший запрос прерывается,
+ * как только приходит новый, и его результат не доставляется.
+ */
+public class DeviceFilterEngine {
+
+    public static final long SEARCH_DEBOUNCE_MS = 250;
+    public static final int ROOM_ALL = -1;
+
+    // Как часто фоновый поток проверяет, не устарел ли запрос
+    private static final int CANCEL_CHECK_INTERVAL = 256;
+
+    public interface Listener {
+        // Вызывается в главном потоке
+        void onFiltered(List<Device> devices, String query, int roomId);
+    }
+
+    // Устройство с заранее посчитанными ключами поиска
+    private static class Entry {
+        final Device device;
+        final String normalizedName;
+        final int roomId;
+
+        Entry(Device device, String normalizedName) {
+            this.device = device;
+            this.normalizedName = normalizedName;
+            this.roomId = device.getRoomId() != null ? device.getRoomId() : ROOM_ALL;
+        }
+    }
+
+    private final Listener listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Executor worker = AppExecutors.serial(AppExecutors.compute());
+    private final AtomicInteger generation = new AtomicInteger();
+    private volatile boolean closed = false;
+
+    // Изменяются только в фоновом потоке
+    private List<Entry> entries = Collections.emptyList();
+    private final Map<Integer, Entry> entriesById = new HashMap<>();
+
+    private Runnable pendingQuery;
+
+    public DeviceFilterEngine(Listener listener) {
+        this.listener = listener;
+    }
+
+    public static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Новый исходный список и немедленная фильтрация по текущим условиям
+     */
+    public void setDevices(List<Device> devices, String query, int roomId) {
+        List<Device> snapshot = devices != null ? new ArrayList<>(devices) : new ArrayList<>();
+        int current = cancelPending();
+        worker.execute(() -> {
+            if (closed) {
+                return;
+            }
+            reindex(snapshot);
+            runQuery(current, normalize(query), query, roomId);
+        });
+    }
+
+    /**
+     * Фильтрация по вводу с клавиатуры — с задержкой, серия нажатий даёт один запрос
+     */
+    public void search(String query, int roomId) {
+        submit(query, roomId, SEARCH_DEBOUNCE_MS);
+    }
+
+    /**
+     * Фильтрация без задержки (смена комнаты, сброс поиска)
+     */
+    public void filterNow(String query, int roomId) {
+        submit(query, roomId, 0);
+    }
+
+    /**
+     * Запросы в очереди не выполняются, результаты больше не доставляются.
+     * Пул общий, поэтому он не останавливается.
+     */
+    public void shutdown() {
+        closed = true;
+        cancelPending();
+    }
+
+    private void submit(String query, int roomId, long delayMs) {
+        if (closed) {
+            return;
+        }
+        int current = cancelPending();
+        String normalized = normalize(query);
+        pendingQuery = () -> {
+            pendingQuery = null;
+            worker.execute(() -> runQuery(current, normalized, query, roomId));
+        };
+        if (delayMs > 0) {
+            handler.postDelayed(pendingQuery, delayMs);
+        } else {
+            pendingQuery.run();
+        }
+    }
+
+    // Вызывается в главном потоке; делает все запущенные ранее запросы устаревшими
+    private int cancelPending() {
+        if (pendingQuery != null) {
+            handler.removeCallbacks(pendingQuery);
+            pendingQuery = null;
+        }
+        return generation.incrementAndGet();
+    }
+
+    // Фоновый поток: ключи пересчитываются только для новых или переименованных устройств
+    private void reindex(List<Device> devices) {
+        List<Entry> rebuilt = new ArrayList<>(devices.size());
+        Map<Integer, Entry> previous = new HashMap<>(entriesById);
+        entriesById.clear();
+        for (Device device : devices) {
+            Entry old = previous.get(device.getId());
+            String normalizedName = old != null && sameName(old.device, device)
+                    ? old.normalizedName
+                    : normalize(device.getName());
+            Entry entry = new Entry(device, normalizedName);
+            rebuilt.add(entry);
+            entriesById.put(device.getId(), entry);
+        }
+        entries = rebuilt;
+    }
+
+    private static boolean sameName(Device a, Device b) {
+        return a.getName() == null ? b.getName() == null : a.getName().equals(b.getName());
+    }
+
+    // Фоновый поток
+    private void runQuery(int queryGeneration, String normalized, String query, int roomId) {
+        List<Device> result = new ArrayList<>();
+        List<Entry> source = entries;
+        for (int i = 0; i < source.size(); i++) {
+            if (i % CANCEL_CHECK_INTERVAL == 0 && generation.get() != queryGeneration) {
+                return;
+            }
+            Entry entry = source.get(i);
+            if (roomId != ROOM_ALL && entry.roomId != roomId) {
+                continue;
+            }
+            if (!normalized.isEmpty() && !entry.normalizedName.contains(normalized)) {
+                continue;
+            }
+            result.add(entry.device);
+        }
+
+        AppExecutors.main().execute(() -> {
+            if (!closed && generation.get() == queryGeneration) {
+                listener.onFiltered(result, query, roomId);
+            }
+        });
+    }
+}
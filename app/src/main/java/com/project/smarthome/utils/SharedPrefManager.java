@@ -12,10 +12,19 @@ public class SharedPrefManager {
     private static final String KEY_SERVER_URL = "key_server_url";
     private static final String KEY_USERNAME = "key_username";
     private static final String KEY_ACTIVE_HOME_ID = "key_active_home_id";
+    private static final String KEY_LAN_BROKER_URL = "key_lan_broker_url";
+    private static final String KEY_MQTT_BASE_TOPIC = "key_mqtt_base_topic";
 
     private static SharedPrefManager instance;
     private final SharedPreferences prefs;
 
+    // Токен нужен каждому запросу — держим его в памяти, а не читаем SharedPreferences каждый раз.
+    // Обновляется в saveToken / clearToken / clearAll
+    private final Object tokenLock = new Object();
+    private boolean tokenLoaded = false;
+    private String token;
+    private String authHeader;
+
     private SharedPrefManager(Context context) {
         prefs = context
                 .getApplicationContext()
@@ -50,15 +59,42 @@ public class SharedPrefManager {
     // ----------------------------------------
 
     public void saveToken(String token) {
-        prefs.edit().putString(KEY_TOKEN, token).apply();
+        synchronized (tokenLock) {
+            prefs.edit().putString(KEY_TOKEN, token).apply();
+            cacheToken(token);
+        }
     }
 
     public String getToken() {
-        return prefs.getString(KEY_TOKEN, null);
+        synchronized (tokenLock) {
+            if (!tokenLoaded) {
+                cacheToken(prefs.getString(KEY_TOKEN, null));
+            }
+            return token;
+        }
+    }
+
+    /**
+     * Готовое значение заголовка Authorization ("Bearer …") или null, если токена нет
+     */
+    public String getAuthHeader() {
+        synchronized (tokenLock) {
+            getToken();
+            return authHeader;
+        }
     }
 
     public void clearToken() {
-        prefs.edit().remove(KEY_TOKEN).apply();
+        synchronized (tokenLock) {
+            prefs.edit().remove(KEY_TOKEN).apply();
+            cacheToken(null);
+        }
+    }
+
+    private void cacheToken(String value) {
+        token = value;
+        authHeader = value != null && !value.isEmpty() ? "Bearer " + value : null;
+        tokenLoaded = true;
     }
 
     public boolean isLoggedIn() {
@@ -90,6 +126,27 @@ public class SharedPrefManager {
         return prefs.getString(KEY_SERVER_URL, null);
     }
 
+    // ----------------------------------------
+    // LAN MQTT
+    // ----------------------------------------
+
+    // Например "tcp://192.168.1.10:1883"; null — локальное управление выключено
+    public void saveLanBrokerUrl(String brokerUrl) {
+        prefs.edit().putString(KEY_LAN_BROKER_URL, brokerUrl).apply();
+    }
+
+    public String getLanBrokerUrl() {
+        return prefs.getString(KEY_LAN_BROKER_URL, null);
+    }
+
+    public void saveMqttBaseTopic(String baseTopic) {
+        prefs.edit().putString(KEY_MQTT_BASE_TOPIC, baseTopic).apply();
+    }
+
+    public String getMqttBaseTopic() {
+        return prefs.getString(KEY_MQTT_BASE_TOPIC, null);
+    }
+
     // ----------------------------------------
     // ACTIVE HOME
     // ----------------------------------------
@@ -120,6 +177,9 @@ public class SharedPrefManager {
     // ----------------------------------------
 
     public void clearAll() {
-        prefs.edit().clear().apply();
+        synchronized (tokenLock) {
+            prefs.edit().clear().apply();
+            cacheToken(null);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,119 @@
+package com.project.smarthome.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Объединение одинаковых одновременных запросов.
+ * Пока запрос с ключом выполняется, повторные вызовы с тем же ключом получают
+ * его результат вместо нового сетевого вызова.
+ * Общий запрос отменяется, только когда его future отменили все ожидающие.
+ */
+public class SingleFlight<T> {
+
+    private static final class Flight<T> {
+        final String key;
+        final CompletableFuture<T> shared = new CompletableFuture<>();
+        CompletableFuture<T> source;
+        int waiters;
+
+        Flight(String key) {
+            this.key = key;
+        }
+    }
+
+    // Защищено this
+    private final Map<String, Flight<T>> inFlight = new HashMap<>();
+
+    /**
+     * @param key  идентификатор ресурса (например, "devices:42")
+     * @param call запускает запрос, если с таким ключом сейчас ничего не выполняется
+     * @return собственный future вызывающего: его отмена не затрагивает остальных
+     */
+    public CompletableFuture<T> run(String key, Supplier<CompletableFuture<T>> call) {
+        Flight<T> flight;
+        boolean leader = false;
+        synchronized (this) {
+            flight = inFlight.get(key);
+            if (flight == null) {
+                flight = new Flight<>(key);
+                inFlight.put(key, flight);
+                leader = true;
+            }
+            flight.waiters++;
+        }
+
+        if (leader) {
+            start(key, flight, call);
+        }
+        return waiter(flight);
+    }
+
+    private void start(String key, Flight<T> flight, Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> source;
+        try {
+            source = call.get();
+        } catch (RuntimeException e) {
+            finish(key, flight);
+            flight.shared.completeExceptionally(e);
+            return;
+        }
+
+        synchronized (this) {
+            flight.source = source;
+            if (flight.waiters == 0) {
+                // Все ожидающие отказались, пока запрос создавался
+                source.cancel(true);
+            }
+        }
+
+        source.whenComplete((result, error) -> {
+            // Убираем ключ до завершения, чтобы следующий вызов ушёл в сеть заново
+            finish(key, flight);
+            if (error != null) {
+                flight.shared.completeExceptionally(error);
+            } else {
+                flight.shared.complete(result);
+            }
+        });
+    }
+
+    private CompletableFuture<T> waiter(Flight<T> flight) {
+        CompletableFuture<T> own = flight.shared.thenApply(Function.identity());
+        own.whenComplete((result, error) -> {
+            if (own.isCancelled()) {
+                release(flight);
+            }
+        });
+        return own;
+    }
+
+    private void release(Flight<T> flight) {
+        CompletableFuture<T> toCancel = null;
+        synchronized (this) {
+            flight.waiters--;
+            if (flight.waiters == 0) {
+                // Ключ освобождается под тем же замком: новый вызов не присоединится
+                // к запросу, который сейчас будет отменён, а запустит свой
+                finish(flight.key, flight);
+                toCancel = flight.source;
+            }
+        }
+        if (toCancel != null) {
+            toCancel.cancel(true);
+        }
+    }
+
+    private synchronized void finish(String key, Flight<T> flight) {
+        if (inFlight.get(key) == flight) {
+            inFlight.remove(key);
+        }
+    }
+
+    public synchronized int inFlightCount() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,151 @@
+package com.project.smarthome.viewmodels;
+
+import com.project.smarthome.models.devices.Device;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Индексированное хранилище устройств текущего дома.
+ *
+ * Устройства лежат в хеш-карте id → устройство и дополнительно разложены по комнатам:
+ * поиск устройства и его позиции в готовых списках — O(1).
+ * Наружу отдаются неизменяемые списки-снимки (по возрастанию id): каждое изменение даёт
+ * новый список, а списки незатронутых комнат и сами объекты устройств переходят в новую
+ * версию без копирования. Замена одного устройства копирует только массив ссылок списка
+ * «все» и его комнаты — это O(n), но не больше сравнения списков, которое всё равно делает
+ * адаптер. Полный набор данных при выборе комнаты не теряется.
+ *
+ * Изменяется только из главного потока; выданные снимки можно читать из любого.
+ */
+class DeviceStore {
+
+    static final int ROOM_ALL = -1;
+    // Корзина для устройств, не привязанных к комнате
+    private static final int NO_ROOM = Integer.MIN_VALUE;
+
+    private static final Comparator<Device> BY_ID = (a, b) -> Integer.compare(a.getId(), b.getId());
+
+    // Готовый список и позиции устройств в нём
+    private static final class View {
+        final List<Device> list;
+        final Map<Integer, Integer> positions;
+
+        View(List<Device> list, Map<Integer, Integer> positions) {
+            this.list = list;
+            this.positions = positions;
+        }
+    }
+
+    private final Map<Integer, Device> byId = new HashMap<>();
+    private final Map<Integer, Map<Integer, Device>> byRoom = new HashMap<>();
+
+    // Готовые списки: ключ — id комнаты или ROOM_ALL
+    private final Map<Integer, View> views = new HashMap<>();
+
+    void replaceAll(List<Device> devices) {
+        byId.clear();
+        byRoom.clear();
+        views.clear();
+        for (Device device : devices) {
+            put(device);
+        }
+    }
+
+    Device get(int deviceId) {
+        return byId.get(deviceId);
+    }
+
+    /**
+     * Добавить или заменить устройство. Если устройство сменило комнату, оно переносится в новую корзину.
+     */
+    void put(Device device) {
+        Device previous = byId.get(device.getId());
+        int room = roomKey(device);
+
+        if (previous != null && roomKey(previous) == room) {
+            // Порядок не меняется — в готовых списках заменяем один элемент
+            byId.put(device.getId(), device);
+            byRoom.get(room).put(device.getId(), device);
+            replaceInView(ROOM_ALL, device);
+            replaceInView(room, device);
+            return;
+        }
+
+        if (previous != null) {
+            removeFromRoom(previous);
+        }
+
+        byId.put(device.getId(), device);
+        Map<Integer, Device> bucket = byRoom.get(room);
+        if (bucket == null) {
+            bucket = new HashMap<>();
+            byRoom.put(room, bucket);
+        }
+        bucket.put(device.getId(), device);
+
+        views.remove(ROOM_ALL);
+        views.remove(room);
+    }
+
+    void remove(int deviceId) {
+        Device previous = byId.remove(deviceId);
+        if (previous == null) {
+            return;
+        }
+        removeFromRoom(previous);
+        views.remove(ROOM_ALL);
+    }
+
+    /**
+     * Неизменяемый список устройств комнаты (или всех устройств для ROOM_ALL)
+     */
+    List<Device> view(int roomId) {
+        View cached = views.get(roomId);
+        if (cached != null) {
+            return cached.list;
+        }
+
+        Map<Integer, Device> source = roomId == ROOM_ALL ? byId : byRoom.get(roomId);
+        List<Device> built = source == null ? new ArrayList<>() : new ArrayList<>(source.values());
+        built.sort(BY_ID);
+        Map<Integer, Integer> positions = new HashMap<>();
+        for (int i = 0; i < built.size(); i++) {
+            positions.put(built.get(i).getId(), i);
+        }
+        View view = new View(Collections.unmodifiableList(built), positions);
+        views.put(roomId, view);
+        return view.list;
+    }
+
+    // Новая версия списка отличается от предыдущей одним элементом; позиции не меняются
+    private void replaceInView(int key, Device device) {
+        View cached = views.get(key);
+        if (cached == null) {
+            return;
+        }
+        List<Device> copy = new ArrayList<>(cached.list);
+        copy.set(cached.positions.get(device.getId()), device);
+        views.put(key, new View(Collections.unmodifiableList(copy), cached.positions));
+    }
+
+    private void removeFromRoom(Device device) {
+        int room = roomKey(device);
+        Map<Integer, Device> bucket = byRoom.get(room);
+        if (bucket != null) {
+            bucket.remove(device.getId());
+            if (bucket.isEmpty()) {
+                byRoom.remove(room);
+            }
+        }
+        views.remove(room);
+    }
+
+    private static int roomKey(Device device) {
+        return device.getRoomId() != null ? device.getRoomId() : NO_ROOM;
+    }
+}
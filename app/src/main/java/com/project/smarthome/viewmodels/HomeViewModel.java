@@ -1,21 +1,48 @@
 package com.project.smarthome.viewmodels;
 
 import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
+
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
+import com.project.smarthome.api.ApiFutures;
+import com.project.smarthome.api.DeviceStreamClient;
+import com.project.smarthome.api.LanMqttClient;
+import com.project.smarthome.api.RequestScope;
+import com.project.smarthome.models.devices.BulkDeviceActionResponse;
 import com.project.smarthome.models.devices.Device;
+import com.project.smarthome.models.devices.DeviceCommand;
 import com.project.smarthome.models.homes.Home;
 import com.project.smarthome.models.homes.room.Room;
+import com.project.smarthome.repositories.DeviceCommandPipeline;
 import com.project.smarthome.repositories.DeviceRepository;
+import com.project.smarthome.repositories.OfflineCommandQueue;
+import com.project.smarthome.repositories.RepositoryCallback;
+import com.project.smarthome.utils.ConnectivityMonitor;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class HomeViewModel extends AndroidViewModel {
 
     private final DeviceRepository repository;
+    private final DeviceStreamClient deviceStream = new DeviceStreamClient();
+    private final DeviceCommandPipeline commandPipeline;
+    // Команды, не отправленные без сети; уходят на сервер при появлении связи
+    private final OfflineCommandQueue offlineQueue;
+    private final ConnectivityMonitor connectivityMonitor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Загрузки, которые отменяются вместе с ViewModel; команды управления сюда не входят
+    private final RequestScope requestScope = new RequestScope();
+
+    // Полный набор устройств дома; в devices публикуется срез по текущей комнате
+    private final DeviceStore store = new DeviceStore();
 
     private final MutableLiveData<List<Device>> devices = new MutableLiveData<>(new ArrayList<>());
     private final MutableLiveData<List<Room>> rooms = new MutableLiveData<>(new ArrayList<>());
@@ -23,15 +50,28 @@ public class HomeViewModel extends AndroidViewModel {
 
     private final MutableLiveData<Boolean> isLoading = new MutableLiveData<>(false);
     private final MutableLiveData<String> errorMessage = new MutableLiveData<>();
+    private final MutableLiveData<String> actionMessage = new MutableLiveData<>();
     private final MutableLiveData<Boolean> connectionStatus = new MutableLiveData<>(true);
 
+    // Оптимистичные состояния: ждут подтверждения сервера и показываются сразу (главный поток)
+    private final Map<Integer, String> optimisticStates = new HashMap<>();
+    // Последние подтверждённые состояния — к ним откатываемся при ошибке (главный поток)
+    private final Map<Integer, String> rollbackStates = new HashMap<>();
+
     // Храним текущие ID
     private int currentHomeId = -1;
-    private int currentRoomId = -1;
+    private int currentRoomId = DeviceStore.ROOM_ALL;
 
     public HomeViewModel(Application application) {
         super(application);
         repository = new DeviceRepository(application);
+        commandPipeline = new DeviceCommandPipeline(repository, commandListener);
+        offlineQueue = OfflineCommandQueue.getInstance(application);
+        offlineQueue.addListener(offlineListener);
+        connectivityMonitor = ConnectivityMonitor.getInstance(application);
+        connectivityMonitor.addListener(connectivityListener);
+        connectionStatus.setValue(connectivityMonitor.isOnline());
+        repository.addLanStateListener(lanStateListener);
     }
 
     public LiveData<List<Device>> getDevices() { return devices; }
@@ -39,6 +79,7 @@ public class HomeViewModel extends AndroidViewModel {
     public LiveData<List<Home>> getHomes() { return homes; }
     public LiveData<Boolean> getIsLoading() { return isLoading; }
     public LiveData<String> getErrorMessage() { return errorMessage; }
+    public LiveData<String> getActionMessage() { return actionMessage; }
     public LiveData<Boolean> getConnectionStatus() { return connectionStatus; }
 
     public int getCurrentHomeId() { return currentHomeId; }
@@ -95,37 +136,190 @@ public class HomeViewModel extends AndroidViewModel {
     }
 
     public void loadDevices(int homeId) {
-        repository.getDevices(homeId)
-                .thenAccept(deviceList -> {
-                    devices.postValue(deviceList);
-                    isLoading.postValue(false);
-                    connectionStatus.postValue(true);
-                })
-                .exceptionally(th -> {
-                    errorMessage.postValue("Не удалось загрузить устройства: " + th.getMessage());
-                    connectionStatus.postValue(false);
-                    isLoading.postValue(false);
-                    return null;
-                });
+        if (deviceStream.getHomeId() != homeId) {
+            deviceStream.connect(homeId, streamListener);
+        }
+
+        requestScope.track(repository.getDevices(homeId, new RepositoryCallback<List<Device>>() {
+            @Override
+            public void onCached(List<Device> deviceList) {
+                // Снимок из локальной БД — показываем сразу, не дожидаясь сервера
+                mainHandler.post(() -> replaceDevices(deviceList));
+                isLoading.postValue(false);
+            }
+
+            @Override
+            public void onSuccess(List<Device> deviceList) {
+                mainHandler.post(() -> replaceDevices(deviceList));
+                isLoading.postValue(false);
+                connectionStatus.postValue(true);
+                // Сервер снова доступен — отправляем накопленные без сети команды
+                offlineQueue.replay();
+            }
+
+            @Override
+            public void onError(String message) {
+                errorMessage.postValue("Не удалось загрузить устройства: " + message);
+                connectionStatus.postValue(false);
+                isLoading.postValue(false);
+            }
+        }));
     }
 
+    /**
+     * Команда управления устройством. Новое состояние показывается сразу с пометкой pending,
+     * быстрые повторные переключения схлопываются (см. DeviceCommandPipeline).
+     */
     public void controlDevice(int deviceId, String newState) {
-        repository.controlDevice(deviceId, newState)
-                .thenAccept(result -> {
-                    // Обновляем устройство в списке
-                    List<Device> deviceList = devices.getValue();
-                    if (deviceList != null) {
-                        for (Device device : deviceList) {
-                            if (device.getId() == deviceId) {
-                                device.setState(newState);
-                                break;
+        Device device = store.get(deviceId);
+        if (device != null) {
+            if (!device.isPending()) {
+                rollbackStates.put(deviceId, device.getState());
+            }
+            optimisticStates.put(deviceId, newState);
+            setDeviceState(deviceId, newState, true);
+        }
+        commandPipeline.submit(deviceId, newState);
+    }
+
+    private final DeviceCommandPipeline.Listener commandListener = new DeviceCommandPipeline.Listener() {
+        @Override
+        public void onCommandAcknowledged(int deviceId, String state) {
+            // Более новая команда дошла — сохранённая без сети больше не нужна
+            offlineQueue.discard(deviceId);
+            confirmState(deviceId, state);
+            connectionStatus.setValue(true);
+        }
+
+        @Override
+        public void onCommandFailed(int deviceId, String state, Throwable error) {
+            connectionStatus.setValue(false);
+            if (ApiFutures.unwrap(error) instanceof IOException) {
+                // Нет связи: команда остаётся в ожидании и уйдёт при подключении
+                offlineQueue.enqueue(deviceId, state);
+                actionMessage.setValue("Нет связи — команда будет отправлена при подключении");
+                return;
+            }
+            rollbackState(deviceId);
+            errorMessage.setValue("Не удалось управлять устройством: " + error.getMessage());
+        }
+    };
+
+    private final OfflineCommandQueue.Listener offlineListener = (deviceId, state, error) -> {
+        // Пользователь мог уже выбрать другое состояние — тогда результат устарел
+        if (!state.equals(optimisticStates.get(deviceId))) {
+            return;
+        }
+        if (error == null) {
+            commandPipeline.onExternalState(deviceId, state);
+            confirmState(deviceId, state);
+        } else {
+            rollbackState(deviceId);
+            errorMessage.setValue("Команда не выполнена: " + error.getMessage());
+        }
+    };
+
+    // Главный поток
+    private void confirmState(int deviceId, String state) {
+        optimisticStates.remove(deviceId);
+        rollbackStates.remove(deviceId);
+        setDeviceState(deviceId, state, false);
+    }
+
+    // Главный поток
+    private void rollbackState(int deviceId) {
+        optimisticStates.remove(deviceId);
+        String previous = rollbackStates.remove(deviceId);
+        if (previous != null) {
+            setDeviceState(deviceId, previous, false);
+        }
+    }
+
+    // Вызывается в главном потоке. Устройство копируется: адаптер сравнивает
+    // старый и новый списки, и изменение на месте он бы не заметил
+    private void setDeviceState(int deviceId, String state, boolean pending) {
+        Device device = store.get(deviceId);
+        if (device == null) {
+            return;
+        }
+        store.put(device.withState(state, pending));
+        publishDevices();
+    }
+
+    // Главный поток. Объекты из репозитория не меняем: они могут быть общими с кэшем
+    private void replaceDevices(List<Device> deviceList) {
+        List<Device> shown = new ArrayList<>(deviceList.size());
+        for (Device device : deviceList) {
+            shown.add(withPendingOverlay(device));
+        }
+        store.replaceAll(shown);
+        publishDevices();
+    }
+
+    // Главный поток: публикуем неизменяемый срез по текущей комнате.
+    // Тот же срез повторно не публикуется — наблюдатели сравнивают ссылки
+    private void publishDevices() {
+        List<Device> view = store.view(currentRoomId);
+        if (view != devices.getValue()) {
+            devices.setValue(view);
+        }
+    }
+
+    // Данные с сервера или из БД не должны затирать ещё не подтверждённые команды
+    private Device withPendingOverlay(Device device) {
+        if (!device.isDeleted()) {
+            commandPipeline.onExternalState(device.getId(), device.getState());
+        }
+        String optimistic = optimisticStates.get(device.getId());
+        if (optimistic == null || device.isDeleted()) {
+            return device;
+        }
+        rollbackStates.put(device.getId(), device.getState());
+        return device.withState(optimistic, true);
+    }
+
+    /**
+     * Пакетное управление устройствами: один запрос вместо запроса на каждое устройство
+     */
+    public void controlDevices(List<DeviceCommand> commands) {
+        if (commands.isEmpty()) {
+            return;
+        }
+        repository.controlDevices(commands)
+                .thenAccept(response -> {
+                    Map<Integer, String> newStates = new HashMap<>();
+                    if (response.getResults() != null) {
+                        for (BulkDeviceActionResponse.Result result : response.getResults()) {
+                            if (result.isOk()) {
+                                newStates.put(result.getDeviceId(), result.getState());
                             }
                         }
-                        devices.postValue(deviceList);
                     }
+
+                    if (!newStates.isEmpty()) {
+                        mainHandler.post(() -> {
+                            for (Map.Entry<Integer, String> entry : newStates.entrySet()) {
+                                commandPipeline.onExternalState(entry.getKey(), entry.getValue());
+                                Device device = store.get(entry.getKey());
+                                if (device != null) {
+                                    store.put(device.withState(entry.getValue(), device.isPending()));
+                                }
+                            }
+                            publishDevices();
+                        });
+                    }
+
+                    if (response.getFailed() > 0) {
+                        errorMessage.postValue("Команда не выполнена для " + response.getFailed()
+                                + " из " + commands.size() + " устройств");
+                    } else {
+                        actionMessage.postValue("Команда выполнена для " + response.getSucceeded()
+                                + " устройств");
+                    }
+                    connectionStatus.postValue(true);
                 })
                 .exceptionally(th -> {
-                    errorMessage.postValue("Не удалось управлять устройством: " + th.getMessage());
+                    errorMessage.postValue("Не удалось управлять устройствами: " + th.getMessage());
                     connectionStatus.postValue(false);
                     return null;
                 });
@@ -139,23 +333,93 @@ public class HomeViewModel extends AndroidViewModel {
         }
     }
 
+    /**
+     * Вызывается при возврате на экран. Пока поток состояний подключён,
+     * список и так актуален и перезагружать его не нужно.
+     */
+    public void onScreenResumed() {
+        if (currentHomeId != -1 && deviceStream.isConnected()
+                && deviceStream.getHomeId() == currentHomeId) {
+            return;
+        }
+        refreshData();
+    }
+
+    // Пропажа сети видна сразу, а не после таймаута запроса
+    private final ConnectivityMonitor.Listener connectivityListener = (online, metered) -> {
+        connectionStatus.setValue(online);
+        if (online && currentHomeId != -1) {
+            deviceStream.reconnectNow();
+            refreshData();
+        }
+    };
+
+    /* ===== Поток состояний устройств ===== */
+
+    private final DeviceStreamClient.Listener streamListener = new DeviceStreamClient.Listener() {
+        @Override
+        public void onDeviceUpdate(Device device) {
+            applyDeviceUpdate(device);
+        }
+
+        @Override
+        public void onStreamConnected(boolean reconnect) {
+            connectionStatus.setValue(true);
+            if (reconnect) {
+                // Пока соединения не было, события могли потеряться — перечитываем список
+                loadDevices(deviceStream.getHomeId());
+            }
+        }
+
+        @Override
+        public void onStreamDisconnected() {
+            // Статус соединения определяют REST-запросы, поток просто переподключится
+        }
+    };
+
+    // Состояние, опубликованное хабом в локальном брокере; приходит раньше события сервера
+    private final LanMqttClient.StateListener lanStateListener = (deviceId, state) -> {
+        Device device = store.get(deviceId);
+        if (device != null && !state.equals(device.getState())) {
+            applyDeviceUpdate(device.withState(state, false));
+        }
+    };
+
+    // Вызывается в главном потоке: заменяем одно устройство, не перезагружая весь список
+    private void applyDeviceUpdate(Device update) {
+        repository.cacheDevice(update);
+
+        if (update.isDeleted()) {
+            store.remove(update.getId());
+        } else {
+            store.put(withPendingOverlay(update));
+        }
+        publishDevices();
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        requestScope.cancelAll();
+        deviceStream.disconnect();
+        commandPipeline.close();
+        offlineQueue.removeListener(offlineListener);
+        connectivityMonitor.removeListener(connectivityListener);
+        repository.removeLanStateListener(lanStateListener);
+        mainHandler.removeCallbacksAndMessages(null);
+    }
+
     public void setCurrentHomeId(int homeId) {
         this.currentHomeId = homeId;
         loadRooms(homeId);
     }
 
+    /**
+     * Показать устройства одной комнаты. -1 — все устройства дома.
+     * Полный список остаётся в хранилище, поэтому вернуться к «Все» можно без перезагрузки.
+     */
     public void setCurrentRoomId(int roomId) {
         this.currentRoomId = roomId;
-        // Для комнат фильтруем устройства
-        List<Device> allDevices = devices.getValue();
-        if (allDevices != null) {
-            List<Device> filteredDevices = new ArrayList<>();
-            for (Device device : allDevices) {
-                if (device.getRoomId() != null && device.getRoomId() == roomId) {
-                    filteredDevices.add(device);
-                }
-            }
-            devices.postValue(filteredDevices);
-        }
+        publishDevices();
     }
 }
\ No newline at end of file
@@ -1,35 +1,50 @@
 package com.project.smarthome.viewmodels;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
-import com.project.smarthome.models.homes.Home;
+import com.project.smarthome.api.ApiClient;
+import com.project.smarthome.api.ApiFutures;
+import com.project.smarthome.api.ApiService;
+import com.project.smarthome.api.RequestScope;
 import com.project.smarthome.models.families.FamilyMember;
-import com.project.smarthome.models.homes.room.Room;
-import com.project.smarthome.models.homes.HomeRepository;
-import com.project.smarthome.models.families.FamilyRepository;
-import com.project.smarthome.models.homes.room.RoomRepositoryImpl;
+import com.project.smarthome.models.homes.HomeResponse;
+import com.project.smarthome.models.homes.room.RoomResponse;
 import com.project.smarthome.utils.SharedPrefManager;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
+/**
+ * Стартовая проверка: есть ли дом, семья и комнаты.
+ *
+ * Запросы идут параллельно: если активный дом уже сохранён, участники и комнаты запрашиваются
+ * сразу, не дожидаясь списка домов. Общее время ограничено BOOTSTRAP_DEADLINE_MS — не успевшие
+ * ответы считаются неизвестными, и состояние выдаётся с флагом partial.
+ */
 public class StartViewModel extends ViewModel {
 
+    public static final long BOOTSTRAP_DEADLINE_MS = 8_000;
+
+    private static final long NO_HOME = -1;
+
     private MutableLiveData<InitState> initState = new MutableLiveData<>();
     private MutableLiveData<String> error = new MutableLiveData<>();
 
-    private HomeRepository homeRepository;
-    private FamilyRepository familyRepository;
-    private RoomRepositoryImpl roomRepository;
+    private final ApiService apiService;
     private SharedPrefManager sharedPrefManager;
 
+    // Загрузки экрана; отменяются в onCleared
+    private final RequestScope requestScope = new RequestScope();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private Bootstrap bootstrap;
+
     public StartViewModel(Context context) {
         this.sharedPrefManager = SharedPrefManager.getInstance(context);
-        // Инициализируем репозитории
-        this.homeRepository = new HomeRepository();
-        this.familyRepository = new FamilyRepository();
-        this.roomRepository = new RoomRepositoryImpl();
+        this.apiService = ApiClient.getApiService(context);
     }
 
     public LiveData<InitState> getInitState() {
@@ -41,75 +56,220 @@ public class StartViewModel extends ViewModel {
     }
 
     public void loadInitState() {
-        try {
-            // Загружаем состояние инициализации асинхронно
-            CompletableFuture.runAsync(() -> {
-                InitState state = new InitState();
-
-                try {
-                    // Проверяем наличие дома
-                    Home currentHome = getCurrentHome();
-                    state.setHasHome(currentHome != null);
-
-                    // Проверяем наличие семьи (если дом есть)
-                    if (currentHome != null) {
-                        List<FamilyMember> familyMembers = getFamilyMembers(currentHome.getId());
-                        state.setHasFamily(familyMembers != null && !familyMembers.isEmpty());
-
-                        // Проверяем наличие комнат (если дом есть)
-                        List<Room> rooms = getRooms(currentHome.getId());
-                        state.setHasRooms(rooms != null && !rooms.isEmpty());
-                    }
+        String token = sharedPrefManager.getToken();
+        if (token == null || token.isEmpty()) {
+            error.postValue("Пользователь не авторизован");
+            return;
+        }
 
-                    initState.postValue(state);
-                } catch (Exception e) {
-                    error.postValue(e.getMessage());
-                }
-            });
-        } catch (Exception e) {
-            error.postValue(e.getMessage());
+        if (bootstrap != null) {
+            bootstrap.abandon();
         }
+        bootstrap = new Bootstrap(sharedPrefManager.getAuthHeader());
+        bootstrap.start(sharedPrefManager.getActiveHomeId());
     }
 
-    private Home getCurrentHome() {
-        // Используем SharedPrefManager для получения текущего активного дома
-        long homeId = sharedPrefManager.getActiveHomeId();
-        if (homeId != -1) {
-            // Здесь должна быть логика получения дома по ID
-            // Временно возвращаем null - нужно будет реализовать
-            return null;
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        if (bootstrap != null) {
+            bootstrap.abandon();
         }
-        return null;
+        requestScope.cancelAll();
     }
 
-    private List<FamilyMember> getFamilyMembers(int homeId) {
-        // Временная реализация - нужно будет адаптировать под вашу архитектуру
-        try {
-            String token = sharedPrefManager.getToken();
-            if (token != null && !token.isEmpty()) {
-                // Вызовите метод из FamilyRepository для получения членов семьи
-                // Временно возвращаем null - нужно будет реализовать
-                return null;
+    // Сохранённый активный дом, если он ещё есть в списке, иначе первый дом пользователя
+    private static HomeResponse pickHome(List<HomeResponse> homes, long activeHomeId) {
+        if (homes == null || homes.isEmpty()) {
+            return null;
+        }
+        for (HomeResponse home : homes) {
+            if (home.getId() == activeHomeId) {
+                return home;
             }
-        } catch (Exception e) {
-            // Логика обработки ошибки
         }
-        return null;
+        return homes.get(0);
     }
 
-    private List<Room> getRooms(int homeId) {
-        // Временная реализация - нужно будет адаптировать под вашу архитектуру
-        try {
-            String token = sharedPrefManager.getToken();
-            if (token != null && !token.isEmpty()) {
-                // Вызовите метод из RoomRepository для получения комнат
-                // Временно возвращаем null - нужно будет реализовать
-                return null;
+    /**
+     * Одна попытка загрузки стартового состояния. Ответы приходят в потоках OkHttp,
+     * срок — в главном потоке, поэтому изменения состояния синхронизированы.
+     */
+    private class Bootstrap {
+        private final String auth;
+        private final Runnable deadline = this::onDeadline;
+
+        private boolean finished = false;
+        private boolean homeResolved = false;
+
+        // Дом, к которому относятся запросы участников и комнат
+        private long detailsHomeId = NO_HOME;
+        private CompletableFuture<List<HomeResponse>> homes;
+        private CompletableFuture<List<FamilyMember>> members;
+        private CompletableFuture<List<RoomResponse>> rooms;
+
+        // До ответа считаем, что семья и комнаты есть: лишний раз не отправляем в мастер настройки
+        private boolean familyDone = false;
+        private boolean hasFamily = true;
+        private boolean roomsDone = false;
+        private boolean hasRooms = true;
+        private boolean partial = false;
+
+        Bootstrap(String auth) {
+            this.auth = auth;
+        }
+
+        void start(long activeHomeId) {
+            mainHandler.postDelayed(deadline, BOOTSTRAP_DEADLINE_MS);
+
+            homes = requestScope.track(
+                    ApiFutures.withErrorMessage(apiService.getMyHomes(auth), "Ошибка получения домов"));
+
+            // Дом уже выбран раньше — остальное запрашиваем параллельно со списком домов
+            if (activeHomeId != NO_HOME) {
+                fetchDetails(activeHomeId);
+            }
+
+            homes.whenComplete((list, e) -> {
+                if (e != null) {
+                    if (!ApiFutures.isCancellation(e)) {
+                        fail(ApiFutures.unwrap(e).getMessage());
+                    }
+                    return;
+                }
+                onHomes(pickHome(list, activeHomeId));
+            });
+        }
+
+        synchronized void abandon() {
+            finish();
+            cancelAll();
+        }
+
+        private synchronized void onHomes(HomeResponse home) {
+            if (finished) {
+                return;
+            }
+            homeResolved = true;
+            if (home == null) {
+                cancelDetails();
+                emit(false);
+                return;
+            }
+            if (home.getId() != detailsHomeId) {
+                // Сохранённого дома больше нет или он не был выбран — запросы для найденного дома
+                cancelDetails();
+                sharedPrefManager.saveActiveHomeId(home.getId());
+                fetchDetails(home.getId());
+            }
+            emitIfComplete();
+        }
+
+        private synchronized void fetchDetails(long homeId) {
+            detailsHomeId = homeId;
+            familyDone = false;
+            roomsDone = false;
+
+            members = requestScope.track(apiService.getFamilyMembers((int) homeId));
+            members.whenComplete((list, e) -> onMembers(homeId, list, e));
+
+            rooms = requestScope.track(apiService.getRooms(auth, (int) homeId));
+            rooms.whenComplete((list, e) -> onRooms(homeId, list, e));
+        }
+
+        private synchronized void onMembers(long homeId, List<FamilyMember> list, Throwable e) {
+            if (finished || homeId != detailsHomeId || ApiFutures.isCancellation(e)) {
+                return;
+            }
+            familyDone = true;
+            if (e == null) {
+                hasFamily = list != null && !list.isEmpty();
+            } else {
+                partial = true;
+            }
+            emitIfComplete();
+        }
+
+        private synchronized void onRooms(long homeId, List<RoomResponse> list, Throwable e) {
+            if (finished || homeId != detailsHomeId || ApiFutures.isCancellation(e)) {
+                return;
+            }
+            roomsDone = true;
+            if (e == null) {
+                hasRooms = list != null && !list.isEmpty();
+            } else {
+                partial = true;
+            }
+            emitIfComplete();
+        }
+
+        private synchronized void onDeadline() {
+            if (finished) {
+                return;
+            }
+            if (!homeResolved) {
+                // Без дома перейти некуда
+                fail("Сервер не отвечает");
+                return;
+            }
+            // Выдаём то, что успели узнать; запоздавшие ответы больше не нужны
+            partial = true;
+            cancelDetails();
+            emit(true);
+        }
+
+        private void emitIfComplete() {
+            if (homeResolved && familyDone && roomsDone) {
+                emit(true);
+            }
+        }
+
+        private void emit(boolean hasHome) {
+            finish();
+            InitState state = new InitState();
+            state.setHasHome(hasHome);
+            state.setHasFamily(hasHome && hasFamily);
+            state.setHasRooms(hasHome && hasRooms);
+            state.setPartial(partial);
+            if (!requestScope.isCancelled()) {
+                initState.postValue(state);
+            }
+        }
+
+        private synchronized void fail(String message) {
+            if (finished) {
+                return;
+            }
+            finish();
+            cancelAll();
+            if (!requestScope.isCancelled()) {
+                error.postValue(message);
             }
-        } catch (Exception e) {
-            // Логика обработки ошибки
         }
-        return null;
+
+        private void finish() {
+            finished = true;
+            mainHandler.removeCallbacks(deadline);
+        }
+
+        private void cancelAll() {
+            if (homes != null) {
+                homes.cancel(true);
+            }
+            cancelDetails();
+        }
+
+        private void cancelDetails() {
+            if (members != null) {
+                members.cancel(true);
+                members = null;
+            }
+            if (rooms != null) {
+                rooms.cancel(true);
+                rooms = null;
+            }
+            detailsHomeId = NO_HOME;
+        }
     }
 
     // Внутренний класс для состояния инициализации
@@ -117,6 +277,8 @@ public class StartViewModel extends ViewModel {
         private boolean hasHome = false;
         private boolean hasFamily = false;
         private boolean hasRooms = false;
+        // Часть ответов не пришла к сроку или завершилась ошибкой
+        private boolean partial = false;
 
         public boolean hasHome() { return hasHome; }
         public void setHasHome(boolean hasHome) { this.hasHome = hasHome; }
@@ -126,7 +288,8 @@ public class StartViewModel extends ViewModel {
 
         public boolean hasRooms() { return hasRooms; }
         public void setHasRooms(boolean hasRooms) { this.hasRooms = hasRooms; }
+
+        public boolean isPartial() { return partial; }
+        public void setPartial(boolean partial) { this.partial = partial; }
     }
 }
-
-
@@ -0,0 +1,268 @@
+package com.project.smarthome.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttCallback;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import io.moquette.broker.Server;
+import io.moquette.broker.config.IConfig;
+import io.moquette.broker.config.MemoryConfig;
+
+/**
+ * LanMqttSession против встроенного брокера Moquette и поддельного хаба
+ */
+public class LanMqttSessionTest {
+
+    private static final String BASE = "smart_home/test";
+    private static final long CONFIRM_TIMEOUT_MS = 500;
+    private static final long WAIT_SEC = 5;
+
+    // Хаб отвечает на {base}/device/{id}/cmd состоянием из этой функции; null — молчит
+    private interface HubBehaviour {
+        String reply(String command);
+    }
+
+    // Брокер один на класс: запуск и остановка занимают секунды
+    private static final Server broker = new Server();
+    private static String brokerUrl;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final BlockingQueue<String> hubCommands = new LinkedBlockingQueue<>();
+    private final List<String> states = new CopyOnWriteArrayList<>();
+
+    private MqttAsyncClient hub;
+    private volatile HubBehaviour hubBehaviour = command -> command;
+    private LanMqttSession session;
+
+    private final LanMqttSession.Scheduler scheduler = new LanMqttSession.Scheduler() {
+        private final Map<Runnable, ScheduledFuture<?>> tasks = new ConcurrentHashMap<>();
+
+        @Override
+        public void postDelayed(Runnable task, long delayMs) {
+            tasks.put(task, timer.schedule(() -> {
+                tasks.remove(task);
+                task.run();
+            }, delayMs, TimeUnit.MILLISECONDS));
+        }
+
+        @Override
+        public void cancel(Runnable task) {
+            ScheduledFuture<?> scheduled = tasks.remove(task);
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+        }
+    };
+
+    @BeforeClass
+    public static void startBroker() throws IOException {
+        int port = freePort();
+        Properties properties = new Properties();
+        properties.setProperty(IConfig.HOST_PROPERTY_NAME, "127.0.0.1");
+        properties.setProperty(IConfig.PORT_PROPERTY_NAME, String.valueOf(port));
+        properties.setProperty(IConfig.ALLOW_ANONYMOUS_PROPERTY_NAME, "true");
+        properties.setProperty(IConfig.PERSISTENCE_ENABLED_PROPERTY_NAME, "false");
+        broker.startServer(new MemoryConfig(properties));
+        brokerUrl = "tcp://127.0.0.1:" + port;
+    }
+
+    @AfterClass
+    public static void stopBroker() {
+        broker.stopServer();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        startHub();
+        session = new LanMqttSession(brokerUrl, "phone", BASE, scheduler, CONFIRM_TIMEOUT_MS,
+                (deviceId, state) -> states.add(deviceId + "=" + state));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        session.close();
+        hub.disconnectForcibly(0, 100);
+        hub.close();
+        timer.shutdownNow();
+    }
+
+    @Test
+    public void commandIsConfirmedByHubState() throws Exception {
+        connect();
+
+        CompletableFuture<Void> result = session.publishCommand(7, "ON");
+
+        assertEquals("7:ON", hubCommands.poll(WAIT_SEC, TimeUnit.SECONDS));
+        result.get(WAIT_SEC, TimeUnit.SECONDS);
+        assertTrue(states.contains("7=ON"));
+    }
+
+    @Test
+    public void brokerAckWithoutHubStateIsNotSuccess() throws Exception {
+        hubBehaviour = command -> null;
+        connect();
+
+        CompletableFuture<Void> result = session.publishCommand(7, "ON");
+
+        // Брокер команду принял и доставил, но хаб её не выполнил
+        assertEquals("7:ON", hubCommands.poll(WAIT_SEC, TimeUnit.SECONDS));
+        assertLanUnavailable(result);
+    }
+
+    @Test
+    public void otherStateDoesNotConfirmCommand() throws Exception {
+        hubBehaviour = command -> "OFF";
+        connect();
+
+        CompletableFuture<Void> result = session.publishCommand(7, "ON");
+
+        assertLanUnavailable(result);
+        assertTrue(states.contains("7=OFF"));
+    }
+
+    @Test
+    public void timeoutFallsBackToRemote() throws Exception {
+        hubBehaviour = command -> null;
+        connect();
+
+        CompletableFuture<String> result = ApiFutures.recoverCancellable(
+                session.publishCommand(7, "ON").thenApply(ignored -> "lan"),
+                error -> {
+                    assertTrue(error instanceof LanMqttSession.LanUnavailableException);
+                    return CompletableFuture.completedFuture("rest");
+                });
+
+        assertEquals("rest", result.get(WAIT_SEC, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void publishWithoutConnectionFailsImmediately() {
+        CompletableFuture<Void> result = session.publishCommand(7, "ON");
+
+        assertTrue(result.isCompletedExceptionally());
+        assertLanUnavailable(result);
+    }
+
+    @Test
+    public void unreachableBrokerFailsConnect() throws Exception {
+        LanMqttSession unreachable = new LanMqttSession("tcp://127.0.0.1:" + freePort(), "phone", BASE,
+                scheduler, CONFIRM_TIMEOUT_MS, (deviceId, state) -> states.add(deviceId + "=" + state));
+        try {
+            assertLanUnavailable(unreachable.connect());
+            assertFalse(unreachable.isConnected());
+        } finally {
+            unreachable.close();
+        }
+    }
+
+    @Test
+    public void externalStateReachesListener() throws Exception {
+        connect();
+
+        hub.publish(BASE + "/device/3/state", "OFF".getBytes(StandardCharsets.UTF_8), 1, false)
+                .waitForCompletion(WAIT_SEC * 1000);
+
+        long deadline = System.currentTimeMillis() + WAIT_SEC * 1000;
+        while (!states.contains("3=OFF") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(states.contains("3=OFF"));
+    }
+
+    @Test
+    public void parseStateTopic() {
+        assertEquals(Integer.valueOf(12), LanMqttSession.parseStateTopic(BASE, BASE + "/device/12/state"));
+        assertNull(LanMqttSession.parseStateTopic(BASE, BASE + "/device/12/cmd"));
+        assertNull(LanMqttSession.parseStateTopic(BASE, "other/device/12/state"));
+        assertNull(LanMqttSession.parseStateTopic(BASE, BASE + "/device/lamp/state"));
+        assertNull(LanMqttSession.parseStateTopic(BASE, BASE + "/device//state"));
+        assertNull(LanMqttSession.parseStateTopic(BASE, BASE + "/device/state"));
+        assertEquals(BASE + "/device/12/cmd", LanMqttSession.commandTopic(BASE, 12));
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private void connect() throws Exception {
+        session.connect().get(WAIT_SEC, TimeUnit.SECONDS);
+        assertTrue(session.isConnected());
+    }
+
+    private static void assertLanUnavailable(CompletableFuture<?> result) {
+        try {
+            result.get(WAIT_SEC, TimeUnit.SECONDS);
+            fail("LanUnavailableException expected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof LanMqttSession.LanUnavailableException);
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    // Подписывается на команды и, как Raspberry_PI/mqtt_service.py, публикует новое состояние
+    private void startHub() throws MqttException {
+        hub = new MqttAsyncClient(brokerUrl, "hub", new MemoryPersistence());
+        hub.setCallback(new MqttCallback() {
+            @Override
+            public void connectionLost(Throwable cause) {
+            }
+
+            @Override
+            public void messageArrived(String topic, MqttMessage message) throws MqttException {
+                String[] levels = topic.split("/");
+                String deviceId = levels[levels.length - 2];
+                String command = new String(message.getPayload(), StandardCharsets.UTF_8);
+                hubCommands.add(deviceId + ":" + command);
+
+                String reply = hubBehaviour.reply(command);
+                if (reply != null) {
+                    hub.publish(BASE + "/device/" + deviceId + "/state",
+                            reply.getBytes(StandardCharsets.UTF_8), 1, false);
+                }
+            }
+
+            @Override
+            public void deliveryComplete(IMqttDeliveryToken token) {
+            }
+        });
+        MqttConnectOptions options = new MqttConnectOptions();
+        options.setCleanSession(true);
+        hub.connect(options).waitForCompletion(WAIT_SEC * 1000);
+        hub.subscribe(BASE + "/device/+/cmd", 1).waitForCompletion(WAIT_SEC * 1000);
+    }
+}
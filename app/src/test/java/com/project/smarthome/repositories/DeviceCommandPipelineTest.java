@@ -0,0 +1,272 @@
+package com.project.smarthome.repositories;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+public class DeviceCommandPipelineTest {
+
+    private static final int DEVICE = 7;
+
+    // Ручное время вместо главного потока
+    private static class ManualScheduler implements DeviceCommandPipeline.Scheduler {
+        private static class Task {
+            final Runnable runnable;
+            final long at;
+
+            Task(Runnable runnable, long at) {
+                this.runnable = runnable;
+                this.at = at;
+            }
+        }
+
+        private final List<Task> tasks = new ArrayList<>();
+        private long now = 0;
+
+        @Override
+        public void postDelayed(Runnable task, long delayMs) {
+            tasks.add(new Task(task, now + delayMs));
+        }
+
+        @Override
+        public void cancel(Runnable task) {
+            tasks.removeIf(t -> t.runnable == task);
+        }
+
+        @Override
+        public void cancelAll() {
+            tasks.clear();
+        }
+
+        void advance(long ms) {
+            long target = now + ms;
+            while (true) {
+                Task next = null;
+                for (Task task : tasks) {
+                    if (task.at <= target && (next == null || task.at < next.at)) {
+                        next = task;
+                    }
+                }
+                if (next == null) {
+                    break;
+                }
+                tasks.remove(next);
+                now = next.at;
+                next.runnable.run();
+            }
+            now = target;
+        }
+    }
+
+    private static class Sent {
+        final String state;
+        final CompletableFuture<Map<String, Object>> call = new CompletableFuture<>();
+
+        Sent(String state) {
+            this.state = state;
+        }
+
+        void ack() {
+            call.complete(new HashMap<>());
+        }
+    }
+
+    private final ManualScheduler scheduler = new ManualScheduler();
+    private final List<Sent> sent = new ArrayList<>();
+    private final List<String> events = new ArrayList<>();
+
+    private final DeviceCommandPipeline pipeline = new DeviceCommandPipeline(
+            (deviceId, state) -> {
+                Sent command = new Sent(state);
+                sent.add(command);
+                return command.call;
+            },
+            new DeviceCommandPipeline.Listener() {
+                @Override
+                public void onCommandAcknowledged(int deviceId, String state) {
+                    events.add("ack " + state);
+                }
+
+                @Override
+                public void onCommandFailed(int deviceId, String state, Throwable error) {
+                    events.add("fail " + state + " " + error.getClass().getSimpleName());
+                }
+            },
+            scheduler);
+
+    // Ответ доставляется через планировщик, как в главный поток
+    private void ack(int index) {
+        sent.get(index).ack();
+        scheduler.advance(0);
+    }
+
+    @Test
+    public void commandsWithinSettleWindowAreCoalesced() {
+        pipeline.submit(DEVICE, "ON");
+        scheduler.advance(100);
+        pipeline.submit(DEVICE, "OFF");
+        scheduler.advance(100);
+        pipeline.submit(DEVICE, "ON");
+
+        scheduler.advance(DeviceCommandPipeline.SETTLE_WINDOW_MS - 1);
+        assertEquals(0, sent.size());
+
+        scheduler.advance(1);
+        assertEquals(1, sent.size());
+        assertEquals("ON", sent.get(0).state);
+
+        ack(0);
+        assertEquals(List.of("ack ON"), events);
+    }
+
+    @Test
+    public void onlyOneCommandInFlightAndLatestSentAfterIt() {
+        pipeline.submit(DEVICE, "ON");
+        scheduler.advance(DeviceCommandPipeline.SETTLE_WINDOW_MS);
+
+        pipeline.submit(DEVICE, "OFF");
+        scheduler.advance(DeviceCommandPipeline.SETTLE_WINDOW_MS);
+        pipeline.submit(DEVICE, "DIM");
+        scheduler.advance(DeviceCommandPipeline.SETTLE_WINDOW_MS);
+        assertEquals(1, sent.size());
+
+        // Ответ на устаревшую команду не показывается, сразу уходит последняя
+        ack(0);
+        assertEquals(2, sent.size());
+        assertEquals("DIM", sent.get(1).state);
+        assertTrue(events.isEmpty());
+
+        ack(1);
+        assertEquals(List.of("ack DIM"), events);
+    }
+
+    @Test
+    public void timeoutThenLateSuccessIsNotReported() {
+        pipeline.submit(DEVICE, "ON");
+        scheduler.advance(DeviceCommandPipeline.SETTLE_WINDOW_MS);
+
+        scheduler.advance(DeviceCommandPipeline.COMMAND_TIMEOUT_MS);
+        assertEquals(List.of("fail ON " + TimeoutException.class.getSimpleName()), events);
+
+        // UI уже откатил состояние — поздний ответ его не переключает
+        ack(0);
+        assertEquals(List.of("fail ON TimeoutException"), events);
+        assertEquals(1, sent.size());
+        assertFalse(pipeline.hasPending(DEVICE));
+    }
+
+    @Test
+    public void timeoutThenErrorIsReportedOnceAndNotResent() {
+        pipeline.submit(DEVICE, "ON");
+        scheduler.advance(DeviceCommandPipeline.SETTLE_WINDOW_MS);
+        scheduler.advance(DeviceCommandPipeline.COMMAND_TIMEOUT_MS);
+
+        sent.get(0).call.completeExceptionally(new IOException("timeout"));
+        scheduler.advance(DeviceCommandPipeline.COMMAND_TIMEOUT_MS);
+
+        assertEquals(1, sent.size());
+        assertEquals(List.of("fail ON TimeoutException"), events);
+    }
+
+    @Test
+    public void commandAfterTimeoutIsSentWhenStuckCallFinishes() {
+        pipeline.submit(DEVICE, "ON");
+        scheduler.advance(DeviceCommandPipeline.SETTLE_WINDOW_MS);
+        scheduler.advance(DeviceCommandPipeline.COMMAND_TIMEOUT_MS);
+
+        pipeline.submit(DEVICE, "OFF");
+        scheduler.advance(DeviceCommandPipeline.SETTLE_WINDOW_MS);
+        assertEquals(1, sent.size());
+
+        sent.get(0).call.completeExceptionally(new IOException("timeout"));
+        scheduler.advance(0);
+        assertEquals(2, sent.size());
+        assertEquals("OFF", sent.get(1).state);
+
+        ack(1);
+        assertEquals(List.of("fail ON TimeoutException", "ack OFF"), events);
+    }
+
+    @Test
+    public void lateSuccessAfterTimeoutForgetsAckedState() {
+        pipeline.submit(DEVICE, "ON");
+        scheduler.advance(DeviceCommandPipeline.SETTLE_WINDOW_MS);
+        ack(0);
+
+        pipeline.submit(DEVICE, "OFF");
+        scheduler.advance(DeviceCommandPipeline.SETTLE_WINDOW_MS);
+        scheduler.advance(DeviceCommandPipeline.COMMAND_TIMEOUT_MS);
+        ack(1);
+
+        // Устройство выключено, хотя UI показывает «ON» — возврат в «ON» отправляется
+        pipeline.submit(DEVICE, "ON");
+        scheduler.advance(DeviceCommandPipeline.SETTLE_WINDOW_MS);
+        assertEquals(3, sent.size());
+        assertEquals("ON", sent.get(2).state);
+    }
+
+    @Test
+    public void toggleBackToAckedStateIsNotResent() {
+        pipeline.submit(DEVICE, "ON");
+        scheduler.advance(DeviceCommandPipeline.SETTLE_WINDOW_MS);
+        ack(0);
+
+        pipeline.submit(DEVICE, "OFF");
+        pipeline.submit(DEVICE, "ON");
+        scheduler.advance(DeviceCommandPipeline.SETTLE_WINDOW_MS);
+
+        assertEquals(1, sent.size());
+        assertEquals(List.of("ack ON", "ack ON"), events);
+    }
+
+    @Test
+    public void toggleBackAfterExternalChangeIsSent() {
+        pipeline.submit(DEVICE, "ON");
+        scheduler.advance(DeviceCommandPipeline.SETTLE_WINDOW_MS);
+        ack(0);
+
+        // Устройство выключили с другого телефона
+        pipeline.onExternalState(DEVICE, "OFF");
+
+        pipeline.submit(DEVICE, "ON");
+        scheduler.advance(DeviceCommandPipeline.SETTLE_WINDOW_MS);
+
+        assertEquals(2, sent.size());
+        assertEquals("ON", sent.get(1).state);
+    }
+
+    @Test
+    public void echoOfOwnCommandKeepsAckedState() {
+        pipeline.submit(DEVICE, "ON");
+        scheduler.advance(DeviceCommandPipeline.SETTLE_WINDOW_MS);
+        ack(0);
+
+        pipeline.onExternalState(DEVICE, "ON");
+        pipeline.submit(DEVICE, "ON");
+        scheduler.advance(DeviceCommandPipeline.SETTLE_WINDOW_MS);
+
+        assertEquals(1, sent.size());
+    }
+
+    @Test
+    public void closeFlushesPendingCommandsAndIgnoresResults() {
+        pipeline.submit(DEVICE, "ON");
+        pipeline.close();
+
+        assertEquals(1, sent.size());
+        assertEquals("ON", sent.get(0).state);
+
+        ack(0);
+        assertTrue(events.isEmpty());
+    }
+}
@@ -0,0 +1,90 @@
+package com.project.smarthome.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class SingleFlightTest {
+
+    private final SingleFlight<String> flights = new SingleFlight<>();
+    private final List<CompletableFuture<String>> sources = new ArrayList<>();
+
+    private CompletableFuture<String> run(String key) {
+        return flights.run(key, () -> {
+            CompletableFuture<String> source = new CompletableFuture<>();
+            sources.add(source);
+            return source;
+        });
+    }
+
+    @Test
+    public void concurrentCallersShareOneRequest() {
+        CompletableFuture<String> first = run("devices:1");
+        CompletableFuture<String> second = run("devices:1");
+
+        assertEquals(1, sources.size());
+        assertEquals(1, flights.inFlightCount());
+
+        sources.get(0).complete("ok");
+
+        assertEquals("ok", first.join());
+        assertEquals("ok", second.join());
+        assertEquals(0, flights.inFlightCount());
+    }
+
+    @Test
+    public void differentKeysDoNotShare() {
+        run("devices:1");
+        run("devices:2");
+
+        assertEquals(2, sources.size());
+    }
+
+    @Test
+    public void sourceIsCancelledOnlyWhenAllWaitersCancel() {
+        CompletableFuture<String> first = run("devices:1");
+        CompletableFuture<String> second = run("devices:1");
+
+        first.cancel(true);
+        assertFalse(sources.get(0).isCancelled());
+
+        sources.get(0).complete("ok");
+        assertEquals("ok", second.join());
+    }
+
+    @Test
+    public void callerAfterFullCancelStartsFreshRequest() {
+        CompletableFuture<String> abandoned = run("devices:1");
+        abandoned.cancel(true);
+
+        assertTrue(sources.get(0).isCancelled());
+        assertEquals(0, flights.inFlightCount());
+
+        CompletableFuture<String> fresh = run("devices:1");
+
+        assertEquals(2, sources.size());
+        assertFalse(fresh.isDone());
+
+        sources.get(1).complete("fresh");
+        assertEquals("fresh", fresh.join());
+    }
+
+    @Test
+    public void completedFlightIsNotReused() {
+        CompletableFuture<String> first = run("devices:1");
+        sources.get(0).complete("old");
+
+        CompletableFuture<String> second = run("devices:1");
+
+        assertEquals(2, sources.size());
+        assertSame("old", first.join());
+        assertFalse(second.isDone());
+    }
+}
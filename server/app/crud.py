@@ -1,4 +1,4 @@
-from sqlalchemy import text
+from sqlalchemy import or_, text
 from sqlalchemy.orm import Session
 from . import models, schemas, auth
 from datetime import datetime
@@ -187,9 +187,14 @@ def delete_home(db: Session, home_id: int) -> bool:
         rooms = db.query(models.Room).filter(models.Room.home_id == home_id).all()
         room_ids = [room.id for room in rooms]
         
-        # 2. Удаляем устройства из этих комнат (если комнаты есть)
+        # 2. Удаляем устройства дома (и без комнаты, и из его комнат), оставляя отметки
+        #    об удалении: клиенты с delta-синхронизацией иначе хранили бы их вечно
+        device_filter = models.Device.home_id == home_id
         if room_ids:
-            db.query(models.Device).filter(models.Device.room_id.in_(room_ids)).delete()
+            device_filter = or_(device_filter, models.Device.room_id.in_(room_ids))
+        for device in db.query(models.Device).filter(device_filter).all():
+            db.add(models.DeviceTombstone(device_id=device.id, home_id=home_id))
+        db.query(models.Device).filter(device_filter).delete(synchronize_session=False)
         
         # 3. Удаляем комнаты дома
         db.query(models.Room).filter(models.Room.home_id == home_id).delete()
@@ -238,6 +243,37 @@ def get_devices_for_home(db: Session, home_id: int):
     return db.query(models.Device).filter(models.Device.home_id == home_id).all()
 
 
+def get_devices_changed_since(db: Session, home_id: int, since: datetime):
+    """
+    Получение устройств дома, измененных после отметки времени since
+    """
+    return db.query(models.Device).filter(
+        models.Device.home_id == home_id,
+        models.Device.last_update > since
+    ).all()
+
+
+def get_device_tombstones_since(db: Session, home_id: int, since: datetime):
+    """
+    Получение отметок об устройствах дома, удаленных после since
+    """
+    return db.query(models.DeviceTombstone).filter(
+        models.DeviceTombstone.home_id == home_id,
+        models.DeviceTombstone.deleted_at > since
+    ).all()
+
+
+def delete_device(db: Session, device: models.Device):
+    """
+    Удаление устройства с сохранением отметки об удалении для delta-синхронизации
+    """
+    tombstone = models.DeviceTombstone(device_id=device.id, home_id=device.home_id)
+    db.add(tombstone)
+    db.delete(device)
+    db.commit()
+    return tombstone
+
+
 def get_device(db: Session, device_id: int):
     """
     Получение устройства по ID
@@ -258,6 +294,34 @@ def update_device_state(db: Session, device: models.Device, new_state: str):
     return device
 
 
+def get_devices_by_ids(db: Session, device_ids):
+    """
+    Получение нескольких устройств одним запросом
+    Возвращает словарь {device_id: device}
+    """
+    if not device_ids:
+        return {}
+    devices = db.query(models.Device).filter(models.Device.id.in_(device_ids)).all()
+    return {device.id: device for device in devices}
+
+
+def update_device_states(db: Session, updates):
+    """
+    Обновление состояния нескольких устройств в одной транзакции
+    
+    Args:
+        updates: список пар (device, new_state)
+    """
+    now = datetime.utcnow()
+    for device, new_state in updates:
+        device.state = new_state
+        device.last_update = now
+    db.commit()
+    for device, _ in updates:
+        db.refresh(device)
+    return [device for device, _ in updates]
+
+
 def add_sensor_history(db: Session, device_id: int, value: str):
     """
     Добавление записи в историю изменений датчика
@@ -319,7 +383,7 @@ def set_automation_enabled(db: Session, automation: models.Automation, enabled:
 
 def get_database_stats(db: Session):
     """Получение статистики базы данных"""
-    from sqlalchemy import text
+    from sqlalchemy import or_, text
     
     stats = {}
     
@@ -1,4 +1,4 @@
-from sqlalchemy import create_engine
+from sqlalchemy import create_engine, inspect, text
 from sqlalchemy.ext.declarative import declarative_base
 from sqlalchemy.orm import sessionmaker
 
@@ -25,4 +25,35 @@ SessionLocal = sessionmaker(
 
 # Создание базового класса для всех моделей SQLAlchemy
 # Все модели наследуются от этого класса и регистрируют свои таблицы
-Base = declarative_base()
\ No newline at end of file
+Base = declarative_base()
+
+
+def migrate_schema():
+    """
+    Дополняет таблицы, созданные предыдущими версиями сервера
+    
+    create_all создает только отсутствующие таблицы и не добавляет столбцы
+    в существующие, поэтому новые столбцы добавляются здесь через ALTER TABLE.
+    Вызывается при запуске после create_all; повторный вызов ничего не меняет.
+    """
+    columns = {column["name"] for column in inspect(engine).get_columns("devices")}
+    
+    with engine.begin() as connection:
+        # home_id и state уже используются в crud, но не было в модели
+        if "home_id" not in columns:
+            connection.execute(text("ALTER TABLE devices ADD COLUMN home_id INTEGER REFERENCES homes (id)"))
+            connection.execute(text(
+                "UPDATE devices SET home_id = (SELECT rooms.home_id FROM rooms WHERE rooms.id = devices.room_id) "
+                "WHERE home_id IS NULL"
+            ))
+            connection.execute(text("CREATE INDEX IF NOT EXISTS ix_devices_home_id ON devices (home_id)"))
+        if "state" not in columns:
+            connection.execute(text("ALTER TABLE devices ADD COLUMN state VARCHAR(50) DEFAULT ''"))
+        if "last_update" not in columns:
+            # SQLite не допускает вычисляемое значение по умолчанию в ADD COLUMN,
+            # поэтому существующие строки заполняются отдельным UPDATE
+            connection.execute(text("ALTER TABLE devices ADD COLUMN last_update DATETIME"))
+            connection.execute(text("UPDATE devices SET last_update = CURRENT_TIMESTAMP WHERE last_update IS NULL"))
+            connection.execute(text(
+                "CREATE INDEX IF NOT EXISTS ix_devices_last_update ON devices (last_update)"
+            ))
@@ -1,11 +1,13 @@
+import asyncio
 from fastapi import FastAPI
 from contextlib import asynccontextmanager
-from .database import Base, engine
+from .database import Base, engine, migrate_schema
 from .routes import auth as auth_router, devices as devices_router, rooms as rooms_router, automations as autos_router, system as system_router, family as family_router, notifications as notifications_router
 from .routes import sysadmin
 from .mqtt_service import start_mqtt
 from .utils import setup_logging
 from .automation_service import load_scheduled_automations
+from .realtime import device_events
 import logging
 
 # Настройка системы логирования при запуске приложения
@@ -14,6 +16,8 @@ logger = logging.getLogger("app")
 
 # Создание таблиц в базе данных (если они не существуют)
 Base.metadata.create_all(bind=engine)
+# Добавление новых столбцов в таблицы, созданные до их появления
+migrate_schema()
 logger.info("Таблицы базы данных инициализированы")
 
 
@@ -26,6 +30,9 @@ async def lifespan(app: FastAPI):
     # Фаза запуска приложения
     logger.info("Запуск фоновых служб...")
     
+    # Поток состояний устройств доставляется через event loop приложения
+    device_events.bind_loop(asyncio.get_running_loop())
+    
     # Запуск MQTT клиента для связи с устройствами
     logger.info("Инициализация MQTT клиента...")
     start_mqtt()
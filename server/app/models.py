@@ -82,12 +82,28 @@ class Device(Base):
     name = Column(String(100), nullable=False)                       # Название устройства
     type = Column(String(100), nullable=False)                       # Тип (light, sensor, switch)
     status = Column(String(50), default="off")                       # Текущее состояние
+    state = Column(String(50), default="")                           # Состояние, которое задают команды
     room_id = Column(Integer, ForeignKey("rooms.id"))                # Расположение в комнате
+    home_id = Column(Integer, ForeignKey("homes.id"), index=True)    # Дом (в том числе без комнаты)
+    last_update = Column(DateTime, default=datetime.utcnow, index=True)  # Время последнего изменения (для delta-синхронизации)
 
     # Связи с другими таблицами
     room = relationship("Room", back_populates="devices")            # Комната устройства
 
 
+class DeviceTombstone(Base):
+    """
+    Отметка об удаленном устройстве
+    Позволяет клиентам при delta-синхронизации узнать об удалении
+    """
+    __tablename__ = "device_tombstones"
+
+    id = Column(Integer, primary_key=True, index=True)
+    device_id = Column(Integer, nullable=False)                      # ID удаленного устройства
+    home_id = Column(Integer, ForeignKey("homes.id"), index=True)    # Дом, из которого удалено
+    deleted_at = Column(DateTime, default=datetime.utcnow, index=True)  # Время удаления
+
+
 class Automation(Base):
     """
     Модель автоматизации
@@ -6,6 +6,7 @@ from .config import MQTT_BROKER, MQTT_PORT, MQTT_BASE_TOPIC, MQTT_USERNAME, MQTT
 from .database import SessionLocal
 from .crud import get_device, update_device_state, add_sensor_history
 from .automation_service import notify_mqtt_event  # для запуска автоматизаций
+from .realtime import publish_device_update  # для потока состояний в приложение
 
 # Настройка логирования
 logger = logging.getLogger("mqtt")
@@ -43,6 +44,11 @@ def on_message(client, userdata, msg):
         # Формат топика: base_topic/device/{device_id}/state
         parts = topic.split("/")
         
+        # Собственные команды сервера ({base}/device/{id}/cmd) приходят по подписке на {base}/#,
+        # но состоянием устройства не являются
+        if parts[-1] == "cmd":
+            return
+        
         # Ищем часть 'device' в пути топика
         if "device" in parts:
             device_idx = parts.index("device")
@@ -76,9 +82,15 @@ def _update_device_in_database(device_id: int, payload: str):
         # Сохраняем историю изменений датчика
         add_sensor_history(db, device_id, payload)
         
-        # Обновляем текущее состояние устройства
-        update_device_state(db, device, payload)
-        logger.info("Обновлено состояние устройства %s -> %s", device_id, payload)
+        # Обновляем текущее состояние устройства. Подтверждение команды, уже записанной
+        # маршрутом /action или /actions, ничего не меняет: событие потока для неё
+        # отправил маршрут, и подписчики не должны получить его дважды
+        if device.state != payload:
+            update_device_state(db, device, payload)
+            logger.info("Обновлено состояние устройства %s -> %s", device_id, payload)
+            
+            # Отправляем изменение подписчикам потока дома
+            publish_device_update(device)
         
         # Запускаем автоматизации, связанные с этим событием
         notify_mqtt_event(db, device_id, payload)
@@ -138,4 +150,34 @@ def publish_device_state(device_id: int, state: str):
         MQTT_CLIENT.publish(topic, state)
         logger.info("Отправлена команда: %s -> %s", topic, state)
     except Exception:
-        logger.exception("Ошибка при отправке команды устройству %s", device_id)
\ No newline at end of file
+        logger.exception("Ошибка при отправке команды устройству %s", device_id)
+
+
+def publish_device_states(commands):
+    """
+    Публикует команды для нескольких устройств за один проход
+    
+    В MQTT нет публикации нескольких сообщений одним пакетом, а устройства слушают
+    каждое свой топик, поэтому на устройство уходит отдельный PUBLISH. Все они ставятся
+    в очередь клиента без ожидания подтверждений, и сетевой цикл отправляет их подряд;
+    в журнал пишется одна строка на весь пакет.
+    
+    Args:
+        commands: список пар (device_id, state)
+        
+    Returns:
+        list: device_id, команды для которых не удалось поставить в очередь
+    """
+    failed = []
+    for device_id, state in commands:
+        topic = f"{MQTT_BASE_TOPIC}/device/{device_id}/cmd"
+        try:
+            info = MQTT_CLIENT.publish(topic, state)
+            if info.rc != mqtt.MQTT_ERR_SUCCESS:
+                failed.append(device_id)
+        except Exception:
+            logger.exception("Ошибка при отправке команды устройству %s", device_id)
+            failed.append(device_id)
+    
+    logger.info("Отправлено команд: %s, ошибок: %s", len(commands) - len(failed), len(failed))
+    return failed
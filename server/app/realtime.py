@@ -0,0 +1,114 @@
+import asyncio
+import logging
+import threading
+from typing import Dict, Optional, Set
+from fastapi.encoders import jsonable_encoder
+from .schemas import DeviceOut
+
+# Настройка логирования для модуля real-time событий
+logger = logging.getLogger("realtime")
+
+# Максимальная длина очереди событий одного подписчика
+# При переполнении самые старые события отбрасываются
+SUBSCRIBER_QUEUE_SIZE = 100
+
+
+class DeviceEventHub:
+    """
+    Рассылка изменений состояния устройств подписчикам конкретного дома
+
+    Публикация может вызываться из любого потока (например, из потока MQTT),
+    доставка в очереди подписчиков выполняется в event loop приложения.
+    """
+
+    def __init__(self):
+        self._subscribers: Dict[int, Set[asyncio.Queue]] = {}
+        self._lock = threading.Lock()
+        self._loop: Optional[asyncio.AbstractEventLoop] = None
+
+    def bind_loop(self, loop: asyncio.AbstractEventLoop):
+        """Привязывает hub к event loop приложения (вызывается при старте)"""
+        self._loop = loop
+
+    def subscribe(self, home_id: int) -> asyncio.Queue:
+        """Создает очередь событий для нового подписчика дома"""
+        queue = asyncio.Queue(maxsize=SUBSCRIBER_QUEUE_SIZE)
+        with self._lock:
+            self._subscribers.setdefault(home_id, set()).add(queue)
+        logger.info("Новый подписчик потока дома %s", home_id)
+        return queue
+
+    def unsubscribe(self, home_id: int, queue: asyncio.Queue):
+        """Удаляет очередь подписчика"""
+        with self._lock:
+            queues = self._subscribers.get(home_id)
+            if queues is not None:
+                queues.discard(queue)
+                if not queues:
+                    del self._subscribers[home_id]
+        logger.info("Подписчик потока дома %s отключен", home_id)
+
+    def publish(self, home_id: int, event: dict):
+        """
+        Отправляет событие всем подписчикам дома
+
+        Args:
+            home_id: ID дома, к которому относится событие
+            event: данные события (сериализуются в JSON при отправке)
+        """
+        with self._lock:
+            queues = list(self._subscribers.get(home_id, ()))
+        if not queues or self._loop is None:
+            return
+
+        for queue in queues:
+            self._loop.call_soon_threadsafe(_put_latest, queue, event)
+
+
+def _put_latest(queue: asyncio.Queue, event: dict):
+    """Кладет событие в очередь, вытесняя самое старое при переполнении"""
+    if queue.full():
+        try:
+            queue.get_nowait()
+        except asyncio.QueueEmpty:
+            pass
+    queue.put_nowait(event)
+
+
+# Единственный экземпляр hub на процесс
+device_events = DeviceEventHub()
+
+
+def publish_device_update(device):
+    """
+    Публикует новое состояние устройства в поток его дома
+
+    Args:
+        device: ORM-объект устройства после обновления
+    """
+    try:
+        payload = jsonable_encoder(DeviceOut.model_validate(device))
+        device_events.publish(device.home_id, {"type": "device", "device": payload})
+    except Exception:
+        logger.exception("Ошибка публикации состояния устройства %s", getattr(device, "id", None))
+
+
+def publish_device_deleted(tombstone):
+    """
+    Публикует отметку об удалении устройства в поток его дома
+
+    Args:
+        tombstone: ORM-объект DeviceTombstone
+    """
+    try:
+        payload = jsonable_encoder(DeviceOut(
+            id=tombstone.device_id,
+            name="",
+            type="",
+            home_id=tombstone.home_id,
+            last_update=tombstone.deleted_at,
+            deleted=True
+        ))
+        device_events.publish(tombstone.home_id, {"type": "device", "device": payload})
+    except Exception:
+        logger.exception("Ошибка публикации удаления устройства %s", tombstone.device_id)
@@ -1,8 +1,18 @@
-from fastapi import APIRouter, Depends, HTTPException, Query
+import asyncio
+from datetime import datetime
+from fastapi import APIRouter, Depends, HTTPException, Query, Request, WebSocket, WebSocketDisconnect, status
+from fastapi.concurrency import run_in_threadpool
 from sqlalchemy.orm import Session
-from typing import List
+from typing import List, Optional
 from .. import schemas, crud, auth, mqtt_service
 from ..auth import get_current_user, get_db
+from ..database import SessionLocal
+from ..realtime import device_events, publish_device_update, publish_device_deleted
+from ..utils import conditional_json_response
+
+# Интервал служебных ping-сообщений в потоке (секунды)
+# Не дает прокси закрыть простаивающее соединение и выявляет отключившихся клиентов
+STREAM_PING_INTERVAL = 25
 
 # Создание роутера для работы с устройствами
 # Префикс /api/devices добавляется ко всем маршрутам этого роутера
@@ -45,6 +55,8 @@ def create_device(
 @router.get("/homes/{home_id}", response_model=List[schemas.DeviceOut])
 def list_devices(
     home_id: int,
+    request: Request,
+    since: Optional[datetime] = Query(None, description="Вернуть только изменения после этой отметки (ISO-8601)"),
     current_user = Depends(get_current_user),
     # home_member = Depends(auth.require_home_access()),  # Любой член дома может просматривать
     db: Session = Depends(get_db)
@@ -52,13 +64,21 @@ def list_devices(
     """
     Получение списка всех устройств в указанном доме
     
+    Поддерживает условные запросы: ответ содержит ETag и Last-Modified,
+    при совпадении If-None-Match возвращается 304 без тела
+    
+    Delta-синхронизация: если передан since, возвращаются только устройства,
+    измененные после since, и отметки об удаленных устройствах (deleted = true)
+    
     Args:
         home_id: ID дома для получения списка устройств
+        request: входящий запрос (заголовок If-None-Match)
+        since: отметка last_update, начиная с которой нужны изменения
         current_user: текущий аутентифицированный пользователь
         db: сессия базы данных
         
     Returns:
-        List[schemas.DeviceOut]: список устройств в доме
+        List[schemas.DeviceOut]: список устройств в доме (или 304 Not Modified)
         
     Raises:
         HTTPException: 403 если пользователь не имеет доступа к дому
@@ -67,9 +87,40 @@ def list_devices(
     # TODO: реализовать проверку прав доступа - пользователь должен иметь доступ к дому
     
     # Получение списка устройств из базы данных
-    devices = crud.get_devices_for_home(db, home_id=home_id)
+    if since is None:
+        devices = crud.get_devices_for_home(db, home_id=home_id)
+        payload = [schemas.DeviceOut.model_validate(device) for device in devices]
+    else:
+        devices = crud.get_devices_changed_since(db, home_id=home_id, since=since)
+        payload = [schemas.DeviceOut.model_validate(device) for device in devices]
+        
+        # Удаленные устройства передаются как отметки с deleted = true
+        for tombstone in crud.get_device_tombstones_since(db, home_id=home_id, since=since):
+            payload.append(schemas.DeviceOut(
+                id=tombstone.device_id,
+                name="",
+                type="",
+                home_id=tombstone.home_id,
+                last_update=tombstone.deleted_at,
+                deleted=True
+            ))
+    
+    # Время самого свежего изменения среди устройств дома
+    updates = [device.last_update for device in payload if device.last_update]
+    last_modified = max(updates) if updates else None
     
-    return devices
+    return conditional_json_response(request, payload, last_modified)
+
+
+def _can_control_home(db: Session, user, home_id: int) -> bool:
+    """
+    Право управлять устройствами дома: администратор или член дома
+    
+    Общее правило для одиночных и пакетных команд
+    """
+    if user.role == "admin":
+        return True
+    return crud.get_home_member(db, home_id, user.id) is not None
 
 
 @router.post("/{device_id}/action")
@@ -109,8 +160,7 @@ def device_action(
     # TODO: реализовать проверку прав доступа - пользователь должен иметь доступ к дому устройства
     
     # Проверяем, что пользователь имеет доступ к дому устройства
-    home_member = crud.get_home_member(db, device.home_id, current_user.id)
-    if not home_member:
+    if not _can_control_home(db, current_user, device.home_id):
         raise HTTPException(status_code=403, detail="Нет доступа к устройству")
 
     # Обновляем состояние устройства в базе данных
@@ -119,9 +169,176 @@ def device_action(
     # Отправляем команду на физическое устройство через MQTT
     mqtt_service.publish_device_state(device_id, new_state)
     
+    # Сообщаем остальным клиентам дома о новом состоянии
+    publish_device_update(updated_device)
+    
     return {
         "status": "ok",
         "device": device_id,
         "state": new_state,
         "message": f"Команда успешно отправлена устройству {device.name}"
-    }
\ No newline at end of file
+    }
+
+
+@router.delete("/{device_id}")
+def delete_device(
+    device_id: int,
+    current_user = Depends(get_current_user),
+    db: Session = Depends(get_db)
+):
+    """
+    Удаление устройства
+    
+    Сохраняет отметку об удалении, чтобы клиенты с delta-синхронизацией
+    убрали устройство из своего списка
+    
+    Raises:
+        HTTPException: 403 если пользователь не имеет доступа к устройству
+        HTTPException: 404 если устройство не найдено
+    """
+    device = crud.get_device(db, device_id)
+    if not device:
+        raise HTTPException(status_code=404, detail="Устройство не найдено")
+    
+    home_member = crud.get_home_member(db, device.home_id, current_user.id)
+    if not home_member:
+        raise HTTPException(status_code=403, detail="Нет доступа к устройству")
+    
+    tombstone = crud.delete_device(db, device)
+    publish_device_deleted(tombstone)
+    
+    return {"status": "ok", "device": device_id, "message": "Устройство удалено"}
+
+
+@router.post("/actions", response_model=schemas.BulkDeviceActionResponse)
+def bulk_device_action(
+    request_in: schemas.BulkDeviceActionRequest,
+    current_user = Depends(get_current_user),
+    db: Session = Depends(get_db)
+):
+    """
+    Пакетное выполнение команд над несколькими устройствами
+    
+    Все состояния обновляются в одной транзакции, команды публикуются
+    в MQTT за один проход. Ошибка по одному устройству не отменяет остальные.
+    
+    Args:
+        request_in: список команд {device_id, state}
+        current_user: текущий аутентифицированный пользователь
+        db: сессия базы данных
+        
+    Returns:
+        schemas.BulkDeviceActionResponse: сводка и результат по каждому устройству
+    """
+    # Для повторяющихся device_id действует последняя команда
+    latest_states = {}
+    for command in request_in.commands:
+        latest_states[command.device_id] = command.state
+    
+    devices = crud.get_devices_by_ids(db, list(latest_states.keys()))
+    
+    results = {}
+    updates = []
+    home_access = {}  # Кэш проверки доступа по home_id
+    for device_id, new_state in latest_states.items():
+        device = devices.get(device_id)
+        if device is None:
+            results[device_id] = schemas.DeviceCommandResult(
+                device_id=device_id, status="not_found", message="Устройство не найдено"
+            )
+            continue
+        
+        if device.home_id not in home_access:
+            home_access[device.home_id] = _can_control_home(db, current_user, device.home_id)
+        if not home_access[device.home_id]:
+            results[device_id] = schemas.DeviceCommandResult(
+                device_id=device_id, status="forbidden", message="Нет доступа к устройству"
+            )
+            continue
+        
+        updates.append((device, new_state))
+    
+    # Обновляем состояния одной транзакцией
+    updated_devices = crud.update_device_states(db, updates)
+    
+    # Отправляем команды на физические устройства за один проход
+    mqtt_service.publish_device_states([(device.id, state) for device, state in updates])
+    
+    for device in updated_devices:
+        publish_device_update(device)
+        results[device.id] = schemas.DeviceCommandResult(
+            device_id=device.id, status="ok", state=device.state
+        )
+    
+    ordered = [results[device_id] for device_id in latest_states]
+    succeeded = len(updated_devices)
+    failed = len(ordered) - succeeded
+    
+    return schemas.BulkDeviceActionResponse(
+        status="ok" if failed == 0 else "partial",
+        succeeded=succeeded,
+        failed=failed,
+        results=ordered
+    )
+
+
+def _authorize_stream(websocket: WebSocket, home_id: int) -> bool:
+    """
+    Проверяет JWT токен подключения к потоку и доступ пользователя к дому
+    
+    Токен берется из заголовка Authorization, либо из параметра запроса token
+    """
+    authorization = websocket.headers.get("authorization", "")
+    token = authorization[7:] if authorization.lower().startswith("bearer ") else None
+    if not token:
+        token = websocket.query_params.get("token")
+    if not token:
+        return False
+    
+    payload = auth.decode_access_token(token)
+    if payload is None or payload.get("sub") is None:
+        return False
+    
+    db = SessionLocal()
+    try:
+        user = crud.get_user_by_username(db, payload["sub"])
+        if user is None:
+            return False
+        if user.role == "admin":
+            return True
+        return crud.get_home_member(db, home_id, user.id) is not None
+    finally:
+        db.close()
+
+
+@router.websocket("/homes/{home_id}/stream")
+async def device_stream(websocket: WebSocket, home_id: int):
+    """
+    WebSocket-поток изменений состояния устройств дома
+    
+    После подключения клиент получает сообщения вида
+    {"type": "device", "device": {...DeviceOut}} при каждом изменении устройства
+    и {"type": "ping"} каждые STREAM_PING_INTERVAL секунд простоя.
+    
+    Args:
+        websocket: WebSocket соединение
+        home_id: ID дома, изменения которого нужно получать
+    """
+    # Проверка делает синхронные запросы к БД — выполняем ее вне цикла событий
+    if not await run_in_threadpool(_authorize_stream, websocket, home_id):
+        await websocket.close(code=status.WS_1008_POLICY_VIOLATION)
+        return
+    
+    await websocket.accept()
+    queue = device_events.subscribe(home_id)
+    try:
+        while True:
+            try:
+                event = await asyncio.wait_for(queue.get(), timeout=STREAM_PING_INTERVAL)
+            except asyncio.TimeoutError:
+                event = {"type": "ping"}
+            await websocket.send_json(event)
+    except (WebSocketDisconnect, RuntimeError):
+        pass
+    finally:
+        device_events.unsubscribe(home_id, queue)
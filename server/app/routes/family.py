@@ -1,7 +1,8 @@
-from fastapi import Depends, HTTPException, APIRouter
+from fastapi import Depends, HTTPException, APIRouter, Request
 from .. import schemas, auth, crud
 from sqlalchemy.orm import Session
 from ..auth import get_current_user, get_db
+from ..utils import conditional_json_response
 
 
 # Создание роутера для семьи
@@ -55,17 +56,19 @@ def get_family_members(
 
 @router.get("/my-homes")
 def get_my_homes(
+    request: Request,
     current_user = Depends(get_current_user),
     db: Session = Depends(get_db)
 ):
-    """Получение списка домов пользователя (для обычных пользователей)"""
+    """Получение списка домов пользователя (для обычных пользователей), поддерживает ETag / If-None-Match"""
     if current_user.role == "admin":
         # Администратор видит все дома
         homes = crud.get_all_homes(db)
     else:
         # Обычный пользователь видит только свои дома
         homes = crud.get_user_homes(db, current_user.id)
-    return homes
+    payload = [schemas.HomeOut.model_validate(home) for home in homes]
+    return conditional_json_response(request, payload)
 
 
 @router.delete("/homes/{home_id}/members/{user_id}")
@@ -1,7 +1,8 @@
-from fastapi import APIRouter, Depends, HTTPException
+from fastapi import APIRouter, Depends, HTTPException, Request
 from sqlalchemy.orm import Session
 from .. import schemas, crud
 from ..auth import get_current_user, get_db
+from ..utils import conditional_json_response
 
 # Создание роутера для работы с комнатами
 # Префикс /api/rooms добавляется ко всем маршрутам этого роутера
@@ -43,19 +44,23 @@ def create_room(
 @router.get("/homes/{home_id}", response_model=list[schemas.RoomOut])
 def list_rooms(
     home_id: int,
+    request: Request,
     current_user = Depends(get_current_user),
     db: Session = Depends(get_db)
 ):
     """
     Получение списка всех комнат в указанном доме
     
+    Поддерживает условные запросы (ETag / If-None-Match)
+    
     Args:
         home_id: ID дома для получения списка комнат
+        request: входящий запрос (заголовок If-None-Match)
         current_user: текущий аутентифицированный пользователь
         db: сессия базы данных
         
     Returns:
-        list[schemas.RoomOut]: список комнат в доме
+        list[schemas.RoomOut]: список комнат в доме (или 304 Not Modified)
         
     Raises:
         HTTPException: 403 если пользователь не имеет доступа к дому
@@ -66,5 +71,6 @@ def list_rooms(
     
     # Получение списка комнат из базы данных
     rooms = crud.get_rooms_for_home(db, home_id)
+    payload = [schemas.RoomOut.model_validate(room) for room in rooms]
     
-    return rooms
\ No newline at end of file
+    return conditional_json_response(request, payload)
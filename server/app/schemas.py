@@ -50,10 +50,38 @@ class DeviceOut(DeviceBase):
     state: Optional[str] = ""          # Текущее состояние устройства
     last_update: Optional[datetime] = None  # Время последнего обновления
     home_id: int                       # ID дома, к которому привязано устройство
+    deleted: bool = False              # Отметка об удалении (только в delta-ответах)
     
     model_config = {"from_attributes": True}
 
 
+class DeviceCommand(BaseModel):
+    """Команда для одного устройства в пакетном запросе"""
+    device_id: int
+    state: str             # Новое состояние устройства (ON, OFF, значение)
+
+
+class BulkDeviceActionRequest(BaseModel):
+    """Пакет команд для нескольких устройств"""
+    commands: List[DeviceCommand]
+
+
+class DeviceCommandResult(BaseModel):
+    """Результат выполнения команды для одного устройства"""
+    device_id: int
+    status: str                        # "ok", "not_found" или "forbidden"
+    state: Optional[str] = None        # Установленное состояние (только для "ok")
+    message: Optional[str] = None      # Описание ошибки
+
+
+class BulkDeviceActionResponse(BaseModel):
+    """Сводка выполнения пакета команд"""
+    status: str                        # "ok" если все команды выполнены, иначе "partial"
+    succeeded: int
+    failed: int
+    results: List[DeviceCommandResult]
+
+
 # =============================================================================
 # МОДЕЛИ ДЛЯ КОМНАТ (ROOMS)
 # =============================================================================
@@ -1,4 +1,13 @@
+import hashlib
+import json
 import logging
+from datetime import datetime, timezone
+from email.utils import format_datetime
+from typing import Any, Optional
+
+from fastapi import Request, Response
+from fastapi.encoders import jsonable_encoder
+
 from .config import LOG_LEVEL
 
 def setup_logging():
@@ -40,4 +49,50 @@ def setup_logging():
     logger.info(
         "Система логирования настроена. Уровень: %s", 
         logging.getLevelName(level)
-    )
\ No newline at end of file
+    )
+
+
+def conditional_json_response(
+    request: Request,
+    payload: Any,
+    last_modified: Optional[datetime] = None
+) -> Response:
+    """
+    Формирует JSON-ответ с поддержкой условных запросов (ETag / If-None-Match)
+
+    ETag вычисляется как хеш сериализованного тела. Если клиент прислал
+    совпадающий If-None-Match, возвращается пустой 304 - клиент переиспользует
+    уже разобранный список.
+
+    Args:
+        request: входящий запрос (нужен заголовок If-None-Match)
+        payload: данные ответа (pydantic-модели, списки, словари)
+        last_modified: время последнего изменения данных, если известно
+
+    Returns:
+        Response: 200 с телом или 304 без тела
+    """
+    body = json.dumps(
+        jsonable_encoder(payload),
+        ensure_ascii=False,
+        separators=(",", ":")
+    ).encode("utf-8")
+    etag = '"' + hashlib.sha1(body).hexdigest() + '"'
+
+    headers = {
+        "ETag": etag,
+        # Кэшировать можно, но каждый раз нужно перепроверять на сервере
+        "Cache-Control": "private, no-cache"
+    }
+    if last_modified is not None:
+        if last_modified.tzinfo is None:
+            last_modified = last_modified.replace(tzinfo=timezone.utc)
+        headers["Last-Modified"] = format_datetime(last_modified, usegmt=True)
+
+    if_none_match = request.headers.get("if-none-match")
+    if if_none_match:
+        client_tags = [tag.strip().removeprefix("W/") for tag in if_none_match.split(",")]
+        if etag in client_tags or "*" in client_tags:
+            return Response(status_code=304, headers=headers)
+
+    return Response(content=body, media_type="application/json", headers=headers)
@@ -0,0 +1,86 @@
+"""
+Delta-синхронизация устройств: изменения после since и отметки об удалении
+"""
+from datetime import datetime, timedelta
+
+import pytest
+from sqlalchemy import create_engine
+from sqlalchemy.orm import sessionmaker
+
+from app import crud, models, schemas
+from app.database import Base
+
+
+@pytest.fixture
+def db():
+    engine = create_engine("sqlite://")
+    Base.metadata.create_all(bind=engine)
+    session = sessionmaker(bind=engine)()
+    yield session
+    session.close()
+
+
+def _home(db, name="Дом"):
+    home = models.Home(name=name, owner_id=1)
+    db.add(home)
+    db.commit()
+    return home
+
+
+def _room(db, home):
+    room = models.Room(name="Кухня", home_id=home.id)
+    db.add(room)
+    db.commit()
+    return room
+
+
+def _device(db, home, room=None):
+    return crud.create_device(db, home_id=home.id, device_in=schemas.DeviceCreate(
+        name="Лампа", type="light", room_id=room.id if room else None, state="OFF"
+    ))
+
+
+def test_changes_since_include_updated_devices_only(db):
+    home = _home(db)
+    kept = _device(db, home)
+    changed = _device(db, home)
+    since = datetime.utcnow() + timedelta(seconds=1)
+    kept.last_update = since - timedelta(seconds=10)
+    db.commit()
+
+    changed.state = "ON"
+    changed.last_update = since + timedelta(seconds=1)
+    db.commit()
+
+    ids = [device.id for device in crud.get_devices_changed_since(db, home_id=home.id, since=since)]
+    assert ids == [changed.id]
+
+
+def test_delete_device_leaves_tombstone(db):
+    home = _home(db)
+    device = _device(db, home)
+    since = datetime.utcnow() - timedelta(seconds=1)
+
+    crud.delete_device(db, device)
+
+    tombstones = crud.get_device_tombstones_since(db, home_id=home.id, since=since)
+    assert [t.device_id for t in tombstones] == [device.id]
+
+
+def test_delete_home_leaves_tombstone_per_device(db):
+    home = _home(db)
+    room = _room(db, home)
+    in_room = _device(db, home, room)
+    without_room = _device(db, home)
+    other_home = _home(db, "Дача")
+    other = _device(db, other_home)
+    since = datetime.utcnow() - timedelta(seconds=1)
+
+    assert crud.delete_home(db, home.id)
+
+    tombstones = crud.get_device_tombstones_since(db, home_id=home.id, since=since)
+    assert sorted(t.device_id for t in tombstones) == sorted([in_room.id, without_room.id])
+    assert crud.get_devices_for_home(db, home_id=home.id) == []
+    # Устройства других домов не затрагиваются
+    assert crud.get_device_tombstones_since(db, home_id=other_home.id, since=since) == []
+    assert [d.id for d in crud.get_devices_for_home(db, home_id=other_home.id)] == [other.id]